@@ -0,0 +1,113 @@
+package mdp;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the solvers and the simulator on the maps of Benchmark.
+ * The JMH annotation is written out in full, since Benchmark is the name of that class.
+ * Run with: mvn -Pjmh package && java -jar target/benchmarks.jar
+ * The size of the generated maps can be changed with -p size=...
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SolverBenchmark {
+
+    private static final int SWEEPS = 10;
+    private static final int ACTIONS = 100000;
+    private static final Action[] MOVES = new Action[]{Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
+
+    @Param({"4x3", "stanford 10x10", "mantas 10x10", "davids 10x10", "random", "maze"})
+    public String map;
+
+    @Param({"300"})
+    public int size;
+
+    private MarkovDecisionProblem mdp;
+    private TransitionTable table;
+    private QLearning learner;
+    private SplittableRandom rand;
+
+    /**
+     * Builds the map and compiles its table once per trial, so the benchmarks only time the work itself.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        mdp = Benchmark.createMap(map, size);
+        table = new TransitionTable(mdp);
+        learner = new QLearning(mdp);
+        learner.setSeed(1);
+        rand = new SplittableRandom(1);
+    }
+
+    /**
+     * A full solve of value iteration, including compiling the table.
+     */
+    @org.openjdk.jmh.annotations.Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void solve(Blackhole blackhole) {
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setEpsilon(1e-3, true);
+        vi.solve();
+        blackhole.consume(vi.getValue(0));
+    }
+
+    /**
+     * A fixed amount of sweeps over the precompiled table, to measure the backups themselves.
+     */
+    @org.openjdk.jmh.annotations.Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void sweeps(Blackhole blackhole) {
+        ValueIteration vi = new ValueIteration(table, false);
+        vi.setIterations(SWEEPS);
+        vi.solve();
+        blackhole.consume(vi.getValue(0));
+    }
+
+    /**
+     * Q-learning steps, reported per step.
+     */
+    @org.openjdk.jmh.annotations.Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(ACTIONS)
+    public void learn(Blackhole blackhole) {
+        learner.learn(ACTIONS);
+        blackhole.consume(learner.getSteps());
+    }
+
+    /**
+     * Simulated random actions, reported per action.
+     */
+    @org.openjdk.jmh.annotations.Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(ACTIONS)
+    public void perform(Blackhole blackhole) {
+        double total = 0;
+        for (int i = 0; i < ACTIONS; i++) {
+            total += mdp.performAction(MOVES[rand.nextInt(4)]);
+            if (mdp.isTerminated()) {
+                mdp.restart();
+            }
+        }
+        blackhole.consume(total);
+    }
+}
@@ -0,0 +1,304 @@
+package mdp;
+
+import java.util.SplittableRandom;
+
+/**
+ * Steps many independent agents through the same grid world at once.
+ * The state of the agents is kept in primitive arrays (one entry per agent) and the moves of every state
+ * are worked out beforehand, so a step of all agents does not make any objects.
+ *
+ * Follows the same rules as MarkovDecisionProblem.performAction: the intended action is performed,
+ * sidestepped, reversed or not performed with the probabilities of the mdp, moves into walls leave the agent
+ * where it is and the reward is that of the field the agent ends up in.
+ * An agent that reaches an end state is put back at its start state right away (auto reset);
+ * isDone() tells which agents finished an episode in the last step.
+ *
+ * Every agent draws its outcomes from its own random stream, split off the seed in the order of the agents.
+ * So the steps of an agent do not depend on how many agents are in the batch or in which order they are stepped,
+ * and the rollout of a single agent can be replayed with the same seed.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class BatchEnvironment {
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final int NOTHING = Action.NOTHING.ordinal();
+
+    private int width;
+    private int height;
+    private int[] moves;    // the state reached by moving from state s in direction d is moves[s * 4 + d]
+    private double[] fieldRewards;
+    private boolean[] terminal;
+    private int[][] outcomes;    // Action ordinals of the outcomes of each action, in the order of getProbs()
+    private double[] thresholds;    // cumulative probabilities of the outcomes
+    private boolean deterministic;
+    private SplittableRandom[] rand;    // per agent
+
+    private int[] states;
+    private int[] starts;
+    private boolean[] done;
+    private double[] rewards;
+    private double[] returns;
+    private int[] lengths;
+    private double[] finishedReturns;
+    private int[] finishedLengths;
+    private int[] finishedStates;
+    private long episodes;
+
+    /**
+     * Constructor of the batch. Copies the landscape, rewards and probabilities of the mdp,
+     * changes to the mdp afterwards are not reflected. All agents start at the initial state of the mdp.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param agents the amount of agents.
+     * @param seed the seed of the random numbers, the same seed gives every agent the same steps.
+     */
+    public BatchEnvironment(MarkovDecisionProblem mdp, int agents, long seed) {
+        this.width = mdp.getWidth();
+        this.height = mdp.getHeight();
+        int count = width * height;
+        this.moves = new int[count * 4];
+        this.fieldRewards = new double[count];
+        this.terminal = new boolean[count];
+        for (int s = 0; s < count; s++) {
+            int x = s % width;
+            int y = s / width;
+            Field field = mdp.getField(x, y);
+            terminal[s] = field == Field.REWARD || field == Field.NEGREWARD;
+            if (field == Field.REWARD) {
+                fieldRewards[s] = mdp.getPosReward();
+            } else if (field == Field.NEGREWARD) {
+                fieldRewards[s] = mdp.getNegReward();
+            } else if (field == Field.EMPTY) {
+                fieldRewards[s] = mdp.getNoReward();
+            }
+            moves[s * 4 + Action.UP.ordinal()] = isOpen(mdp, x, y + 1) ? s + width : s;
+            moves[s * 4 + Action.DOWN.ordinal()] = isOpen(mdp, x, y - 1) ? s - width : s;
+            moves[s * 4 + Action.LEFT.ordinal()] = isOpen(mdp, x - 1, y) ? s - 1 : s;
+            moves[s * 4 + Action.RIGHT.ordinal()] = isOpen(mdp, x + 1, y) ? s + 1 : s;
+        }
+        this.outcomes = new int[4][];
+        for (int a = 0; a < 4; a++) {
+            Action action = ACTIONS[a];
+            outcomes[a] = new int[]{a, Action.previousAction(action).ordinal(), Action.nextAction(action).ordinal(),
+                Action.backAction(action).ordinal()};
+        }
+        double[] probs = mdp.getProbs();
+        this.thresholds = new double[4];
+        double total = 0;
+        for (int o = 0; o < 4; o++) {
+            total += probs[o];
+            thresholds[o] = total;
+        }
+        this.deterministic = mdp.isDeterministic();
+        SplittableRandom root = new SplittableRandom(seed);
+        this.rand = new SplittableRandom[agents];
+        for (int i = 0; i < agents; i++) {
+            rand[i] = root.split();
+        }
+
+        this.states = new int[agents];
+        this.starts = new int[agents];
+        this.done = new boolean[agents];
+        this.rewards = new double[agents];
+        this.returns = new double[agents];
+        this.lengths = new int[agents];
+        this.finishedReturns = new double[agents];
+        this.finishedLengths = new int[agents];
+        this.finishedStates = new int[agents];
+        int start = mdp.getInitialYPosition() * width + mdp.getInitialXPosition();
+        for (int i = 0; i < agents; i++) {
+            starts[i] = start;
+            states[i] = start;
+        }
+    }
+
+    /**
+     * Checks whether the given position is within the landscape and not an obstacle.
+     */
+    private static boolean isOpen(MarkovDecisionProblem mdp, int x, int y) {
+        return x >= 0 && x < mdp.getWidth() && y >= 0 && y < mdp.getHeight() && mdp.getField(x, y) != Field.OBSTACLE;
+    }
+
+    /**
+     * Performs one action for every agent.
+     *
+     * @param actions the Action ordinal intended by each agent.
+     */
+    public void step(byte[] actions) {
+        for (int i = 0; i < states.length; i++) {
+            step(i, actions[i]);
+        }
+    }
+
+    /**
+     * Performs one action for every agent, each taking the action the policy gives for its state.
+     * Agents standing in a state without an action (like a start state in an end state) do nothing.
+     *
+     * @param policy the policy to follow.
+     */
+    public void step(Policy policy) {
+        for (int i = 0; i < states.length; i++) {
+            Action action = policy.getAction(states[i] % width, states[i] / width);
+            step(i, action == null ? NOTHING : action.ordinal());
+        }
+    }
+
+    /**
+     * Performs the intended action for one agent, resetting it when it reaches an end state.
+     */
+    private void step(int agent, int action) {
+        int state = states[agent];
+        if (action != NOTHING) {
+            int performed = action;
+            if (!deterministic) {
+                double prob = rand[agent].nextDouble();
+                int o = 0;
+                while (o < 4 && prob >= thresholds[o]) {
+                    o++;
+                }
+                // o == 4: do nothing (i.e. stay where you are)
+                performed = o < 4 ? outcomes[action][o] : NOTHING;
+            }
+            if (performed != NOTHING) {
+                state = moves[state * 4 + performed];
+            }
+        }
+        double reward = fieldRewards[state];
+        rewards[agent] = reward;
+        returns[agent] += reward;
+        lengths[agent]++;
+        if (terminal[state]) {
+            done[agent] = true;
+            finishedReturns[agent] = returns[agent];
+            finishedLengths[agent] = lengths[agent];
+            finishedStates[agent] = state;
+            returns[agent] = 0;
+            lengths[agent] = 0;
+            episodes++;
+            state = starts[agent];
+        } else {
+            done[agent] = false;
+        }
+        states[agent] = state;
+    }
+
+    /**
+     * Puts all agents back at their start states and forgets their unfinished episodes.
+     */
+    public void reset() {
+        for (int i = 0; i < states.length; i++) {
+            states[i] = starts[i];
+            done[i] = false;
+            rewards[i] = 0;
+            returns[i] = 0;
+            lengths[i] = 0;
+        }
+        episodes = 0;
+    }
+
+    /**
+     * Sets the state an agent starts in and moves it there, forgetting its unfinished episode.
+     *
+     * @param agent the index of the agent.
+     * @param xpos X coordinate of the start state.
+     * @param ypos Y coordinate of the start state.
+     */
+    public void setStart(int agent, int xpos, int ypos) {
+        starts[agent] = ypos * width + xpos;
+        states[agent] = starts[agent];
+        returns[agent] = 0;
+        lengths[agent] = 0;
+    }
+
+    /**
+     * Getter for the current states of the agents (index = y * width + x). The array is updated by every step.
+     */
+    public int[] getStates() {
+        return states;
+    }
+
+    /**
+     * Getter for which agents finished an episode in the last step. The array is updated by every step.
+     */
+    public boolean[] getDone() {
+        return done;
+    }
+
+    /**
+     * Getter for the rewards the agents got in the last step. The array is updated by every step.
+     */
+    public double[] getRewards() {
+        return rewards;
+    }
+
+    /**
+     * Getter for the total reward of the last finished episode of an agent.
+     */
+    public double getFinishedReturn(int agent) {
+        return finishedReturns[agent];
+    }
+
+    /**
+     * Getter for the amount of actions of the last finished episode of an agent.
+     */
+    public int getFinishedLength(int agent) {
+        return finishedLengths[agent];
+    }
+
+    /**
+     * Getter for the end state (index = y * width + x) in which the last finished episode of an agent ended.
+     */
+    public int getFinishedState(int agent) {
+        return finishedStates[agent];
+    }
+
+    /**
+     * Getter for the start state of an agent (index = y * width + x).
+     */
+    public int getStart(int agent) {
+        return starts[agent];
+    }
+
+    /**
+     * Getter for the amount of episodes finished since construction or the last reset.
+     */
+    public long getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Getter for the x-position of an agent.
+     */
+    public int getX(int agent) {
+        return states[agent] % width;
+    }
+
+    /**
+     * Getter for the y-position of an agent.
+     */
+    public int getY(int agent) {
+        return states[agent] / width;
+    }
+
+    /**
+     * Getter for the amount of agents.
+     */
+    public int getAgents() {
+        return states.length;
+    }
+
+    /**
+     * Returns the width of the landscape
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the landscape
+     */
+    public int getHeight() {
+        return height;
+    }
+}
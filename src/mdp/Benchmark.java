@@ -0,0 +1,126 @@
+package mdp;
+
+import java.util.Random;
+
+/**
+ * Measures the speed of the solvers and the simulator, so optimizations can be compared.
+ * Every case is run a few times to warm up the JIT before the measured runs, and the average is printed.
+ * Usage: java mdp.Benchmark [size of the generated map, default 1000]
+ * This gives a quick overview; for careful measurements use the JMH benchmarks (mvn -Pjmh package).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class Benchmark {
+
+    private final static int WARMUP_RUNS = 3;
+    private final static int MEASURED_RUNS = 5;
+    private final static long SIMULATED_ACTIONS = 1000000;
+    private final static int BACKUP_SWEEPS = 10;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String[] names = new String[]{"4x3", "stanford 10x10", "mantas 10x10", "davids 10x10", size + "x" + size,
+            "maze " + size + "x" + size};
+        System.out.println(String.format("%-16s %16s %16s %16s %16s", "map", "VI solve ms", "backups/s", "Q steps/s", "actions/s"));
+        for (String name : names) {
+            MarkovDecisionProblem mdp = createMap(name, size);
+            boolean large = mdp.getWidth() * mdp.getHeight() > 10000;
+            double solve = measure(() -> {
+                ValueIteration vi = new ValueIteration(mdp, false);
+                if (large) {
+                    vi.setEpsilon(1e-3, true);
+                }
+                vi.solve();
+            }, large ? 1 : WARMUP_RUNS, large ? 1 : MEASURED_RUNS);
+            long states = (long) mdp.getWidth() * mdp.getHeight();
+            // compiled once, so only the backups are timed
+            TransitionTable table = new TransitionTable(mdp);
+            double sweeps = measure(() -> {
+                ValueIteration vi = new ValueIteration(table, false);
+                vi.setIterations(BACKUP_SWEEPS);
+                vi.solve();
+            }, WARMUP_RUNS, MEASURED_RUNS);
+            QLearning q = new QLearning(mdp);
+            double learn = measure(() -> q.learn(SIMULATED_ACTIONS), WARMUP_RUNS, MEASURED_RUNS);
+            mdp.restart();
+            Random rand = new Random(1);
+            Action[] actions = new Action[]{Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
+            double perform = measure(() -> {
+                for (long i = 0; i < SIMULATED_ACTIONS; i++) {
+                    mdp.performAction(actions[rand.nextInt(4)]);
+                    if (mdp.isTerminated()) {
+                        mdp.restart();
+                    }
+                }
+            }, WARMUP_RUNS, MEASURED_RUNS);
+            System.out.println(String.format("%-16s %16.3f %16.0f %16.0f %16.0f", name, solve / 1e6,
+                BACKUP_SWEEPS * states / (sweeps / 1e9), SIMULATED_ACTIONS / (learn / 1e9),
+                SIMULATED_ACTIONS / (perform / 1e9)));
+        }
+    }
+
+    /**
+     * Runs the given case a few times for warming up, then times the measured runs.
+     *
+     * @param task the case to measure.
+     * @param warmups the amount of runs that are not measured.
+     * @param runs the amount of measured runs.
+     * @return the average time of a measured run in nanoseconds.
+     */
+    private static double measure(Runnable task, int warmups, int runs) {
+        for (int i = 0; i < warmups; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / (double) runs;
+    }
+
+    /**
+     * Creates one of the maps of Main, or a generated map of the given size.
+     *
+     * @param name the name of the map.
+     * @param size the width and height of the generated map.
+     * @return the headless markov decision problem.
+     */
+    static MarkovDecisionProblem createMap(String name, int size) {
+        MarkovDecisionProblem mdp;
+        if (name.equals("4x3")) {
+            mdp = new MarkovDecisionProblem(true);
+        } else if (name.endsWith("10x10")) {
+            mdp = new MarkovDecisionProblem(10, 10, true);
+        } else {
+            mdp = new MarkovDecisionProblem(size, size, true);
+        }
+        if (name.startsWith("stanford")) {
+            Main.createStanfordMap(mdp);
+        } else if (name.startsWith("mantas")) {
+            Main.createMantasMap(mdp);
+        } else if (name.startsWith("davids")) {
+            Main.createDavidsMap(mdp);
+        } else if (name.startsWith("maze")) {
+            // a generated maze with a few loops, shortcuts and traps
+            MapGenerator generator = new MapGenerator(42);
+            generator.setMaze(true, 0.1);
+            generator.setTraps(size);
+            mdp = generator.generate(size, size, true);
+        } else if (!name.equals("4x3")) {
+            // a fixed random map: some obstacles and end states, the goal in the far corner
+            Random rand = new Random(42);
+            for (int i = 0; i < size * size / 5; i++) {
+                mdp.setField(rand.nextInt(size), rand.nextInt(size), Field.OBSTACLE);
+            }
+            for (int i = 0; i < size; i++) {
+                mdp.setField(rand.nextInt(size), rand.nextInt(size), Field.NEGREWARD);
+            }
+            mdp.setField(0, 0, Field.EMPTY);
+            mdp.setField(size - 1, size - 1, Field.REWARD);
+        }
+        mdp.setPosReward(100);
+        mdp.setNegReward(-100);
+        mdp.setNoReward(-1);
+        return mdp;
+    }
+}
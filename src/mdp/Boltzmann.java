@@ -0,0 +1,61 @@
+package mdp;
+
+import java.util.SplittableRandom;
+
+/**
+ * Boltzmann (softmax) exploration: takes every action with a probability that grows with its Q-value.
+ * A high temperature makes all actions about equally likely, a low one almost always takes the best action.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class Boltzmann implements Exploration {
+
+    private DecaySchedule temperature;
+
+    /**
+     * Constructor with a temperature that changes per step.
+     *
+     * @param temperature the schedule of the temperature, should stay above 0.
+     */
+    public Boltzmann(DecaySchedule temperature) {
+        this.temperature = temperature;
+    }
+
+    @Override
+    public int chooseAction(QTable table, int[] visits, int state, long step, SplittableRandom rand) {
+        double t = Math.max(temperature.valueAt(step), Double.MIN_NORMAL);
+        // subtract the highest value so the exponents can not overflow
+        double max = table.getHighestValue(state);
+        double total = 0;
+        for (int a = 0; a < QTable.ACTIONS; a++) {
+            total += Math.exp((table.getValue(state, a) - max) / t);
+        }
+        double pick = rand.nextDouble() * total;
+        for (int a = 0; a < QTable.ACTIONS - 1; a++) {
+            pick -= Math.exp((table.getValue(state, a) - max) / t);
+            if (pick < 0) {
+                return a;
+            }
+        }
+        return QTable.ACTIONS - 1;
+    }
+
+    @Override
+    public void getProbabilities(QTable table, int[] visits, int state, long step, double[] probabilities) {
+        double t = Math.max(temperature.valueAt(step), Double.MIN_NORMAL);
+        double max = table.getHighestValue(state);
+        double total = 0;
+        for (int a = 0; a < QTable.ACTIONS; a++) {
+            probabilities[a] = Math.exp((table.getValue(state, a) - max) / t);
+            total += probabilities[a];
+        }
+        for (int a = 0; a < QTable.ACTIONS; a++) {
+            probabilities[a] /= total;
+        }
+    }
+
+    @Override
+    public double getExplorationRate(long step) {
+        return temperature.valueAt(step);
+    }
+}
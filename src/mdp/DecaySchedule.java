@@ -0,0 +1,76 @@
+package mdp;
+
+/**
+ * A value that changes over the course of learning, like the epsilon of epsilon-greedy exploration
+ * or the temperature of Boltzmann exploration.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class DecaySchedule {
+
+    private double start;
+    private double end;
+    private long steps;
+    private double rate;
+
+    /**
+     * Constructor of a schedule. Use the static factories for readability.
+     */
+    private DecaySchedule(double start, double end, long steps, double rate) {
+        this.start = start;
+        this.end = end;
+        this.steps = steps;
+        this.rate = rate;
+    }
+
+    /**
+     * A value that never changes.
+     *
+     * @param value the value.
+     * @return the schedule.
+     */
+    public static DecaySchedule constant(double value) {
+        return new DecaySchedule(value, value, 0, 1);
+    }
+
+    /**
+     * A value that goes linearly from start to end in the given amount of steps, and stays at end afterwards.
+     *
+     * @param start the value at step 0.
+     * @param end the final value.
+     * @param steps the amount of steps to get from start to end.
+     * @return the schedule.
+     */
+    public static DecaySchedule linear(double start, double end, long steps) {
+        return new DecaySchedule(start, end, Math.max(1, steps), 1);
+    }
+
+    /**
+     * A value that is multiplied by the rate every step, until it reaches end.
+     *
+     * @param start the value at step 0.
+     * @param end the final value.
+     * @param rate the factor per step, e.g. 0.9999.
+     * @return the schedule.
+     */
+    public static DecaySchedule exponential(double start, double end, double rate) {
+        return new DecaySchedule(start, end, 0, rate);
+    }
+
+    /**
+     * Getter for the value at the given step.
+     *
+     * @param step the amount of steps (or episodes) made so far.
+     * @return double of the value.
+     */
+    public double valueAt(long step) {
+        if (steps > 0) {
+            return step >= steps ? end : start + (end - start) * step / steps;
+        }
+        if (rate == 1) {
+            return start;
+        }
+        double value = start * Math.pow(rate, step);
+        return start > end ? Math.max(end, value) : Math.min(end, value);
+    }
+}
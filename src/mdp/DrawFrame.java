@@ -24,6 +24,7 @@ public class DrawFrame extends JFrame {
         height = mdp.getHeight() * 50;
         setSize(width + 20, height + 100);
         setTitle("MDP Visualization");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         drawContent();
     }
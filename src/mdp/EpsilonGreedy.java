@@ -0,0 +1,52 @@
+package mdp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Epsilon-greedy exploration: takes a random action with probability epsilon, and the best action otherwise.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class EpsilonGreedy implements Exploration {
+
+    private DecaySchedule epsilon;
+
+    /**
+     * Constructor with a fixed epsilon.
+     *
+     * @param epsilon the probability of a random action.
+     */
+    public EpsilonGreedy(double epsilon) {
+        this(DecaySchedule.constant(epsilon));
+    }
+
+    /**
+     * Constructor with an epsilon that changes per step.
+     *
+     * @param epsilon the schedule of the probability of a random action.
+     */
+    public EpsilonGreedy(DecaySchedule epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public int chooseAction(QTable table, int[] visits, int state, long step, SplittableRandom rand) {
+        if (rand.nextDouble() < epsilon.valueAt(step)) {
+            return rand.nextInt(QTable.ACTIONS);
+        }
+        return table.getHighestAction(state);
+    }
+
+    @Override
+    public void getProbabilities(QTable table, int[] visits, int state, long step, double[] probabilities) {
+        double epsilon = this.epsilon.valueAt(step);
+        Arrays.fill(probabilities, epsilon / QTable.ACTIONS);
+        probabilities[table.getHighestAction(state)] += 1 - epsilon;
+    }
+
+    @Override
+    public double getExplorationRate(long step) {
+        return epsilon.valueAt(step);
+    }
+}
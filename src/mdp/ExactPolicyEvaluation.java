@@ -0,0 +1,407 @@
+package mdp;
+
+/**
+ * The exact values of a fixed policy, e.g. one of a ValueIteration or a QLearning, for comparing policies
+ * without simulating them. Solves the linear system (I - discount * P) V = R, where P holds the probabilities
+ * of the policy's actions, with successive over-relaxation (SOR) sweeps on sparse CSR arrays.
+ *
+ * Uses the same conventions as ValueIteration: the value of an end state is its reward, that of an obstacle 0,
+ * and that of any other state its reward plus the discounted expected value of the next state.
+ * A state in which the policy gives no action keeps the agent in place. An action into a wall or out of the grid has
+ * no row in the TransitionTable, so its row is made from the probabilities of the mdp like performAction plays it out:
+ * the agent can still slip sideways, and every blocked outcome leaves it where it is.
+ * With a discount of 1 the system only has a solution when the policy reaches an end state from every state.
+ * Policies of a general TabularMDP are given as the action of every state and read with getValue(state).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class ExactPolicyEvaluation implements SolvedPolicy {
+
+    private static final int BLOCKED = -2;
+
+    private MarkovDecisionProblem mdp;    // null when evaluating on a TabularMDP directly
+    private Policy policy;
+    private TabularMDP model;
+    private int[] policyActions;    // the action of every state of the model, -1 for none
+    private double discount;
+    private double relaxation;
+    private double epsilon;
+    private int iterations;
+
+    private TransitionTable table;
+    private double[] values;    // indexed like the model, for grid worlds y * width + x
+    private Action[] actions;
+    private double[] rewards;
+    private double[] diagonal;     // 1 - discount * P(s, s)
+    private int[] rowStart;        // the other entries of a row of discount * P, CSR
+    private int[] columns;
+    private double[] coefficients;
+    private int[] blockedNexts;       // the outcomes of a blocked action, see blockedRow
+    private double[] blockedProbs;
+    private int sweeps;
+    private double residual;
+
+    /**
+     * Constructor, evaluates the policy right away.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param policy the policy to evaluate.
+     * @param discount the discount factor.
+     */
+    public ExactPolicyEvaluation(MarkovDecisionProblem mdp, Policy policy, double discount) {
+        this(mdp, policy, discount, true);
+    }
+
+    /**
+     * Constructor. When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param policy the policy to evaluate.
+     * @param discount the discount factor.
+     * @param solve whether the values should be calculated right away.
+     */
+    public ExactPolicyEvaluation(MarkovDecisionProblem mdp, Policy policy, double discount, boolean solve) {
+        this.mdp = mdp;
+        this.policy = policy;
+        this.discount = discount;
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Constructor for a policy of a general model.
+     * When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param model the compiled markov decision problem.
+     * @param policyActions the action of the policy in every state, -1 for none.
+     * @param discount the discount factor.
+     * @param solve whether the values should be calculated right away.
+     */
+    public ExactPolicyEvaluation(TabularMDP model, int[] policyActions, double discount, boolean solve) {
+        this.model = model;
+        this.policyActions = policyActions;
+        this.discount = discount;
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Sets the default settings.
+     */
+    private void initialise() {
+        this.relaxation = 1;
+        this.epsilon = 1e-10;
+        this.iterations = 100000;
+    }
+
+    /**
+     * Builds the system for the current policy and mdp and solves it.
+     */
+    public void solve() {
+        if (mdp != null) {
+            this.table = new TransitionTable(mdp);
+            this.model = table;
+        }
+        build();
+        this.values = new double[model.getStates()];
+        this.sweeps = 0;
+        for (int s = 0; s < values.length; s++) {
+            if (diagonal[s] <= 0) {
+                String state = table == null ? "" + s : "(" + table.getX(s) + ", " + table.getY(s) + ")";
+                System.err.println("ERROR: ExactPolicyEvaluation: the policy never leaves state " + state
+                    + ", so with discount " + discount + " it has no value.");
+                return;
+            }
+        }
+        Calculate();
+        this.residual = computeResidual();
+        if (residual > Math.sqrt(epsilon)) {
+            System.err.println("ERROR: ExactPolicyEvaluation: did not converge, residual " + residual
+                + ". Does the policy reach an end state?");
+        }
+    }
+
+    /**
+     * Builds the rows of the system from the action rows of the chosen actions.
+     * Moves that leave the agent in place go to the diagonal, the others to the CSR arrays.
+     */
+    private void build() {
+        int states = model.getStates();
+        actions = table == null ? null : new Action[states];
+        rewards = new double[states];
+        diagonal = new double[states];
+        rowStart = new int[states + 1];
+        int[] rows = new int[states];    // the action row of every state, -1 for none, BLOCKED for a blocked action
+        int entries = 0;
+        blockedNexts = new int[5];
+        blockedProbs = new double[5];
+        for (int s = 0; s < states; s++) {
+            diagonal[s] = 1;
+            rows[s] = -1;
+            int first = model.getActionStart(s);
+            int last = model.getActionStart(s + 1);
+            if (first == last) {
+                rewards[s] = model.getReward(s);
+                continue;    // an end state or obstacle
+            }
+            int action = policyActions == null ? -1 : policyActions[s];
+            if (table != null) {
+                actions[s] = policy.getAction(table.getX(s), table.getY(s));
+                action = actions[s] == null ? -1 : actions[s].ordinal();
+            }
+            rewards[s] = model.getReward(s);
+            for (int row = first; row < last; row++) {
+                if (model.getActionId(row) == action) {
+                    rows[s] = row;
+                    rewards[s] = model.getRowReward(row);
+                    entries += model.getSuccessorStart(row + 1) - model.getSuccessorStart(row);
+                    break;
+                }
+            }
+            if (rows[s] < 0 && actions != null && actions[s] != null && actions[s] != Action.NOTHING) {
+                rows[s] = BLOCKED;
+                entries += blockedRow(s, actions[s]);
+            } else if (rows[s] < 0) {
+                diagonal[s] = 1 - discount;    // no action, so the agent stays
+            }
+        }
+        columns = new int[entries];
+        coefficients = new double[entries];
+        int entry = 0;
+        for (int s = 0; s < states; s++) {
+            rowStart[s] = entry;
+            if (rows[s] == BLOCKED) {
+                int count = blockedRow(s, actions[s]);
+                for (int o = 0; o < count; o++) {
+                    double coefficient = discount * blockedProbs[o];
+                    if (blockedNexts[o] == s) {
+                        diagonal[s] -= coefficient;
+                    } else {
+                        columns[entry] = blockedNexts[o];
+                        coefficients[entry] = coefficient;
+                        entry++;
+                    }
+                }
+                continue;
+            }
+            if (rows[s] < 0) {
+                continue;
+            }
+            for (int e = model.getSuccessorStart(rows[s]); e < model.getSuccessorStart(rows[s] + 1); e++) {
+                double coefficient = discount * model.getProbability(e);
+                if (model.getSuccessor(e) == s) {
+                    diagonal[s] -= coefficient;
+                } else {
+                    columns[entry] = model.getSuccessor(e);
+                    coefficients[entry] = coefficient;
+                    entry++;
+                }
+            }
+        }
+        rowStart[states] = entry;
+    }
+
+    /**
+     * Works out the outcomes of an action that moves into a wall or out of the grid, from the probabilities of the mdp
+     * in the order of getProbs(). Outcomes that are blocked leave the agent in place, outcomes ending up in the same
+     * state are merged. The reward is that of the state, the same as in the rows of the TransitionTable.
+     *
+     * @param state the index of the state.
+     * @param action the blocked action.
+     * @return the amount of outcomes, stored in blockedNexts and blockedProbs.
+     */
+    private int blockedRow(int state, Action action) {
+        double[] probs = mdp.getProbs();
+        Action[] outcomes = new Action[]{action, Action.previousAction(action), Action.nextAction(action),
+            Action.backAction(action), Action.NOTHING};
+        int x = table.getX(state);
+        int y = table.getY(state);
+        int count = 0;
+        for (int o = 0; o < outcomes.length; o++) {
+            if (probs[o] <= 0) {
+                continue;
+            }
+            int nx = x + (outcomes[o] == Action.LEFT ? -1 : outcomes[o] == Action.RIGHT ? 1 : 0);
+            int ny = y + (outcomes[o] == Action.DOWN ? -1 : outcomes[o] == Action.UP ? 1 : 0);
+            boolean open = nx >= 0 && nx < table.getWidth() && ny >= 0 && ny < table.getHeight()
+                && mdp.getField(nx, ny) != Field.OBSTACLE;
+            int next = open ? table.getIndex(nx, ny) : state;
+            int i = 0;
+            while (i < count && blockedNexts[i] != next) {
+                i++;
+            }
+            if (i == count) {
+                blockedNexts[count] = next;
+                blockedProbs[count] = 0;
+                count++;
+            }
+            blockedProbs[i] += probs[o];
+        }
+        return count;
+    }
+
+    /**
+     * SOR sweeps until the largest change of a value drops below epsilon, or the maximum amount of sweeps is reached.
+     */
+    private void Calculate() {
+        while (sweeps < iterations) {
+            double change = 0;
+            for (int s = 0; s < values.length; s++) {
+                double sum = rewards[s];
+                for (int e = rowStart[s]; e < rowStart[s + 1]; e++) {
+                    sum += coefficients[e] * values[columns[e]];
+                }
+                double value = values[s] + relaxation * (sum / diagonal[s] - values[s]);
+                change = Math.max(change, Math.abs(value - values[s]));
+                values[s] = value;
+            }
+            sweeps++;
+            if (change < epsilon) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Calculates the largest difference between both sides of the system, R - (I - discount * P) V.
+     *
+     * @return the residual.
+     */
+    private double computeResidual() {
+        double largest = 0;
+        for (int s = 0; s < values.length; s++) {
+            double sum = rewards[s] - diagonal[s] * values[s];
+            for (int e = rowStart[s]; e < rowStart[s + 1]; e++) {
+                sum += coefficients[e] * values[columns[e]];
+            }
+            largest = Math.max(largest, Math.abs(sum));
+        }
+        return largest;
+    }
+
+    /**
+     * Getter for the index of a state of the grid world.
+     *
+     * @throws IllegalStateException if a general model is solved, which has no grid, or nothing is solved yet.
+     */
+    private int getIndex(int xpos, int ypos) {
+        if (mdp == null) {
+            throw new IllegalStateException("A general model has no grid, use getValue(state)");
+        }
+        if (table == null) {
+            throw new IllegalStateException("Nothing is solved yet, call solve() first");
+        }
+        return table.getIndex(xpos, ypos);
+    }
+
+    /**
+     * Gets the action of the evaluated policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the action of the policy in the state, null for end states and obstacles.
+     */
+    @Override
+    public Action getAction(int xpos, int ypos) {
+        return actions[getIndex(xpos, ypos)];
+    }
+
+    /**
+     * Gets the exact value of a state under the policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    @Override
+    public double getValue(int xpos, int ypos) {
+        return values[getIndex(xpos, ypos)];
+    }
+
+    /**
+     * Gets the exact value of a state under the policy.
+     *
+     * @param state index of the state in the model.
+     * @return the value of the state.
+     */
+    public double getValue(int state) {
+        return values[state];
+    }
+
+    /**
+     * Getter for the discount factor.
+     */
+    @Override
+    public double getDiscount() {
+        return discount;
+    }
+
+    /**
+     * Prints the amount of sweeps and the residual of the last solve to the console.
+     */
+    public void printConvergence() {
+        System.out.println("sweeps: " + sweeps + ", residual: " + residual);
+    }
+
+    /**
+     * Getter for the amount of sweeps made by the last solve.
+     */
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * Getter for the largest difference between both sides of the system after the last solve.
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Setter for the relaxation factor of the sweeps, 1 (plain Gauss-Seidel) by default.
+     * A bit above 1 can converge faster; the system is not symmetric, so higher factors
+     * can oscillate instead of converging.
+     */
+    public void setRelaxation(double relaxation) {
+        this.relaxation = relaxation;
+    }
+
+    /**
+     * Setter for the change of the values below which the sweeps stop, 1e-10 by default.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Setter for the maximum amount of sweeps, 100000 by default.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Setter for the discount factor. Call solve() afterwards.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Setter for the policy to evaluate. Call solve() afterwards.
+     */
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Setter for the action of the policy in every state of a general model, -1 for none. Call solve() afterwards.
+     */
+    public void setPolicy(int[] policyActions) {
+        this.policyActions = policyActions;
+    }
+}
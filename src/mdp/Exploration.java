@@ -0,0 +1,42 @@
+package mdp;
+
+import java.util.SplittableRandom;
+
+/**
+ * A way for a learning agent to choose its next action, trading off trying actions against using what it learned.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public interface Exploration {
+
+    /**
+     * Chooses the action to take in a state.
+     *
+     * @param table the current Q-values.
+     * @param visits how often each state-action was taken, indexed like the values of the table.
+     * @param state index of the current state.
+     * @param step the amount of actions made so far.
+     * @param rand the random number generator to use.
+     * @return ordinal of the chosen action.
+     */
+    int chooseAction(QTable table, int[] visits, int state, long step, SplittableRandom rand);
+
+    /**
+     * The probability of every action being chosen in a state, for Expected SARSA.
+     *
+     * @param table the current Q-values.
+     * @param visits how often each state-action was taken, indexed like the values of the table.
+     * @param state index of the current state.
+     * @param step the amount of actions made so far.
+     * @param probabilities array of length 4 to write the probability of every action ordinal to.
+     */
+    void getProbabilities(QTable table, int[] visits, int state, long step, double[] probabilities);
+
+    /**
+     * The parameter that sets how much is explored at a step, for recording the learning progress.
+     *
+     * @param step the amount of actions made so far.
+     * @return the exploration rate, like epsilon or the temperature.
+     */
+    double getExplorationRate(long step);
+}
@@ -0,0 +1,22 @@
+package mdp;
+
+/**
+ * Gets notified by a MarkovDecisionProblem when its landscape or rewards change.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public interface LandscapeListener {
+
+    /**
+     * Called after the field with the given coordinates has been set.
+     *
+     * @param xpos X coordinate of the field in the grid world.
+     * @param ypos Y coordinate of the field in the grid world.
+     */
+    void fieldChanged(int xpos, int ypos);
+
+    /**
+     * Called after a change that affects every state, like the rewards or the action probabilities.
+     */
+    void modelChanged();
+}
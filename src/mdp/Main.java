@@ -1,5 +1,7 @@
 package mdp;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Random;
 
 /**
@@ -12,11 +14,20 @@ public class Main {
     final static boolean CREATE_10_X_10 = true; // false creates 3x4 original map
     final static boolean CREATE_HARD_MAP = true;   // (10x10 map must be true) if true - randomly creates a hard map, false creates easy map
     public final static boolean RUN_Q = true;   // false run value iteration algorithm
+    final static boolean EVALUATE_POLICY = false;   // if true - simulates the value iteration policy before showing it
 
     public static void main(String[] args) {
         MarkovDecisionProblem mdp;
         Random rand = new Random();
-        if (CREATE_10_X_10) {
+        if (args.length > 0) {
+            // a map file given on the command line replaces the built in maps
+            try {
+                mdp = MapLoader.readAscii(Paths.get(args[0]), Boolean.getBoolean("java.awt.headless"));
+            } catch (IOException e) {
+                System.err.println("ERROR: Main: main: can not load the map " + e.getMessage());
+                return;
+            }
+        } else if (CREATE_10_X_10) {
             mdp = new MarkovDecisionProblem(10, 10);
             if (CREATE_HARD_MAP) {
                 int random = rand.nextInt(2);
@@ -62,11 +73,21 @@ public class Main {
 
     /**
      * Creates Value Iteration class which pre-calculates an optimal policy and then executes it.
+     * With EVALUATE_POLICY the policy is first simulated and its mean return printed.
      *
      * @param mdp the initialised markov decision problem class.
      */
     private static void runValueIteration(MarkovDecisionProblem mdp) {
         ValueIteration vi = new ValueIteration(mdp);
+        if (EVALUATE_POLICY) {
+            // a loose interval relative to the rewards, and a cap on the episodes, so the evaluation stays short
+            PolicyEvaluator evaluator = new PolicyEvaluator(mdp);
+            evaluator.setDiscount(vi.getDiscount());
+            evaluator.setConfidence(0.01 * Math.abs(mdp.getNegReward()), 1.96);
+            evaluator.setEpisodes(1000, 100000);
+            evaluator.evaluate(vi);
+            evaluator.printResults();
+        }
         boolean isComplexityPrinted = false;
         while (true) {
             do {
@@ -85,7 +106,7 @@ public class Main {
      *
      * @param mdp the initialised markov decision problem class.
      */
-    private static void createStanfordMap(MarkovDecisionProblem mdp) {
+    static void createStanfordMap(MarkovDecisionProblem mdp) {
         mdp.setInitialState(0, 9);
         mdp.setField(3, 2, Field.NEGREWARD);
         mdp.setField(3, 6, Field.NEGREWARD);
@@ -117,7 +138,7 @@ public class Main {
      *
      * @param mdp the initialised markov decision problem class.
      */
-    private static void createMantasMap(MarkovDecisionProblem mdp) {
+    static void createMantasMap(MarkovDecisionProblem mdp) {
         mdp.setField(5, 5, Field.REWARD);
 
         mdp.setField(4, 5, Field.NEGREWARD);
@@ -137,7 +158,7 @@ public class Main {
      *
      * @param mdp the initialised markov decision problem class.
      */
-    private static void createDavidsMap(MarkovDecisionProblem mdp) {
+    static void createDavidsMap(MarkovDecisionProblem mdp) {
         mdp.setField(5, 4, Field.REWARD);
         mdp.setField(1, 0, Field.NEGREWARD);
         mdp.setField(1, 1, Field.NEGREWARD);
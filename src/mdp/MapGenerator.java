@@ -0,0 +1,391 @@
+package mdp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random maps of any size from a seed, for testing the solvers on large grids.
+ * The same seed and settings always give the same map.
+ *
+ * A map is either open, with every field an obstacle with the set density, or a maze of corridors
+ * (a random spanning tree, carved with an explicit stack so any size works) of which a part of the walls
+ * can be knocked out to make loops. At least one goal is always reachable from the start: the first goal is placed
+ * on a field reachable from the start and the other end states never block the shortest path to it.
+ * The fields are made in a byte array and set with one setLandscape call, so the grid is not redrawn per field.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MapGenerator {
+
+    private static final byte OBSTACLE = (byte) Field.OBSTACLE.ordinal();
+    private static final byte EMPTY = (byte) Field.EMPTY.ordinal();
+    private static final byte REWARD = (byte) Field.REWARD.ordinal();
+    private static final byte NEGREWARD = (byte) Field.NEGREWARD.ordinal();
+    private static final byte UNREACHED = 0;
+    private static final byte START = 5;
+    private static final byte PATH = 6;
+    private static final int TRIES = 64;
+
+    private long seed;
+    private double obstacleDensity;
+    private boolean maze;
+    private double loops;
+    private int goals;
+    private int traps;
+    private double posReward;
+    private double negReward;
+    private double noReward;
+
+    private SplittableRandom rand;
+    private int width;
+    private int height;
+    private byte[] fields;
+    private byte[] reached;    // per field how it was reached from the start (1-4 from which side), 0 if not
+    private int reachable;
+    private int start;
+
+    /**
+     * Constructor with the default settings: an open map with 20% obstacles, one goal and no traps.
+     *
+     * @param seed the seed of the random generator.
+     */
+    public MapGenerator(long seed) {
+        this.seed = seed;
+        this.obstacleDensity = 0.2;
+        this.maze = false;
+        this.loops = 0;
+        this.goals = 1;
+        this.traps = 0;
+        this.posReward = 1;
+        this.negReward = -1;
+        this.noReward = -0.04;
+    }
+
+    /**
+     * Generates a map into a new mdp, with the rewards of the generator and the agent on the start.
+     *
+     * @param width the width of the map.
+     * @param height the height of the map.
+     * @param headless if true the mdp is never drawn.
+     * @return the mdp.
+     */
+    public MarkovDecisionProblem generate(int width, int height, boolean headless) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Can not generate a " + width + "x" + height + " map");
+        }
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(width, height, headless);
+        mdp.setLandscape(generateFields(width, height));
+        mdp.setPosReward(posReward);
+        mdp.setNegReward(negReward);
+        mdp.setNoReward(noReward);
+        mdp.setInitialState(start % width, start / width);
+        mdp.restart();
+        return mdp;
+    }
+
+    /**
+     * Generates the fields of a map.
+     *
+     * @param width the width of the map.
+     * @param height the height of the map.
+     * @return the Field ordinal of every field, row by row (index = y * width + x).
+     */
+    private byte[] generateFields(int width, int height) {
+        this.rand = new SplittableRandom(seed);
+        this.width = width;
+        this.height = height;
+        this.fields = new byte[width * height];
+        if (maze) {
+            carveMaze();
+        } else {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = rand.nextDouble() < obstacleDensity ? OBSTACLE : EMPTY;
+            }
+            start = rand.nextInt(fields.length);
+            fields[start] = EMPTY;
+        }
+        this.reached = new byte[fields.length];
+        search();
+        if (goals > 0) {
+            if (reachable < 2) {
+                openPath();
+                search();
+            }
+            int goal = pickReachable();
+            if (goal < 0) {
+                System.err.println("ERROR: MapGenerator: generateFields: a " + width + "x" + height + " map has no room for a goal.");
+            } else {
+                fields[goal] = REWARD;
+                protectPath(goal);
+            }
+            placeEndStates(REWARD, goals - 1);
+        }
+        placeEndStates(NEGREWARD, traps);
+        byte[] fields = this.fields;
+        this.fields = null;
+        this.reached = null;
+        return fields;
+    }
+
+    /**
+     * Carves a maze out of a grid full of obstacles. The corridors run over the fields with even coordinates,
+     * every step of the random depth first search knocks out the wall between two of them.
+     * Afterwards walls between two corridors are knocked out with the loop probability.
+     */
+    private void carveMaze() {
+        Arrays.fill(fields, OBSTACLE);
+        int cellsX = (width + 1) / 2;
+        int cellsY = (height + 1) / 2;
+        start = 2 * rand.nextInt(cellsX) + 2 * rand.nextInt(cellsY) * width;
+        fields[start] = EMPTY;
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = start;
+        int[] options = new int[4];
+        while (size > 0) {
+            int cell = stack[size - 1];
+            int x = cell % width;
+            int y = cell / width;
+            int count = 0;
+            if (y + 2 < height && fields[cell + 2 * width] == OBSTACLE) {
+                options[count++] = width;
+            }
+            if (y >= 2 && fields[cell - 2 * width] == OBSTACLE) {
+                options[count++] = -width;
+            }
+            if (x >= 2 && fields[cell - 2] == OBSTACLE) {
+                options[count++] = -1;
+            }
+            if (x + 2 < width && fields[cell + 2] == OBSTACLE) {
+                options[count++] = 1;
+            }
+            if (count == 0) {
+                size--;
+                continue;
+            }
+            int step = options[rand.nextInt(count)];
+            fields[cell + step] = EMPTY;
+            fields[cell + 2 * step] = EMPTY;
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = cell + 2 * step;
+        }
+        if (loops > 0) {
+            for (int y = 0; y < height; y++) {
+                for (int x = y % 2 == 0 ? 1 : 0; x < width; x += 2) {
+                    // a wall between two corridors to the left and right, or above and below
+                    int i = y * width + x;
+                    boolean between = y % 2 == 0 ? x + 1 < width : y + 1 < height;
+                    if (between && fields[i] == OBSTACLE && rand.nextDouble() < loops) {
+                        fields[i] = EMPTY;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Breadth first search from the start over the empty fields, remembering from which side every field was reached.
+     * End states are not passed through, since the episode stops there.
+     */
+    private void search() {
+        Arrays.fill(reached, UNREACHED);
+        int[] queue = new int[1024];
+        int head = 0;
+        int size = 0;
+        queue[size++] = start;
+        reached[start] = START;
+        reachable = 1;
+        while (size > 0) {
+            int state = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            int x = state % width;
+            int y = state / width;
+            for (int side = 1; side <= 4; side++) {
+                int next;
+                if (side == 1 && y + 1 < height) {
+                    next = state + width;
+                } else if (side == 2 && y > 0) {
+                    next = state - width;
+                } else if (side == 3 && x > 0) {
+                    next = state - 1;
+                } else if (side == 4 && x + 1 < width) {
+                    next = state + 1;
+                } else {
+                    continue;
+                }
+                if (fields[next] != EMPTY || reached[next] != UNREACHED) {
+                    continue;
+                }
+                // the side of next from which it was entered, so the path can be walked back
+                reached[next] = (byte) side;
+                reachable++;
+                if (size == queue.length) {
+                    int[] grown = new int[queue.length * 2];
+                    for (int i = 0; i < size; i++) {
+                        grown[i] = queue[(head + i) % queue.length];
+                    }
+                    queue = grown;
+                    head = 0;
+                }
+                queue[(head + size) % queue.length] = next;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Knocks the obstacles out of a random straight line from the start, for maps so full of obstacles
+     * that nothing can be reached.
+     */
+    private void openPath() {
+        int x = start % width;
+        int y = start / width;
+        if (width > 1) {
+            int to = x + 1 < width ? width - 1 : 0;
+            for (int i = x; i != to; i += Integer.signum(to - x)) {
+                fields[y * width + i + Integer.signum(to - x)] = EMPTY;
+            }
+        } else {
+            int to = y + 1 < height ? height - 1 : 0;
+            for (int i = y; i != to; i += Integer.signum(to - y)) {
+                fields[(i + Integer.signum(to - y)) * width + x] = EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Picks a random empty field reachable from the start, other than the start and the protected path.
+     *
+     * @return the index of the field, -1 if there is none.
+     */
+    private int pickReachable() {
+        for (int i = 0; i < TRIES; i++) {
+            int state = rand.nextInt(fields.length);
+            if (isFree(state)) {
+                return state;
+            }
+        }
+        // few fields are reachable, count them and take a random one
+        int free = 0;
+        for (int state = 0; state < fields.length; state++) {
+            if (isFree(state)) {
+                free++;
+            }
+        }
+        if (free == 0) {
+            return -1;
+        }
+        int pick = rand.nextInt(free);
+        for (int state = 0; state < fields.length; state++) {
+            if (isFree(state) && pick-- == 0) {
+                return state;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether an end state can be put on a field.
+     */
+    private boolean isFree(int state) {
+        return fields[state] == EMPTY && reached[state] != UNREACHED && reached[state] != START && reached[state] != PATH;
+    }
+
+    /**
+     * Marks the shortest path from the start to the goal, so no end state is placed on it.
+     */
+    private void protectPath(int goal) {
+        int state = goal;
+        while (reached[state] != START) {
+            int side = reached[state];
+            reached[state] = PATH;
+            switch (side) {
+                case 1:
+                    state -= width;
+                    break;
+                case 2:
+                    state += width;
+                    break;
+                case 3:
+                    state += 1;
+                    break;
+                default:
+                    state -= 1;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Puts end states on free reachable fields, as long as there are any left.
+     *
+     * @param field the Field ordinal of the end states.
+     * @param count the amount of end states.
+     */
+    private void placeEndStates(byte field, int count) {
+        for (int i = 0; i < count; i++) {
+            int state = pickReachable();
+            if (state < 0) {
+                System.err.println("ERROR: MapGenerator: placeEndStates: no free field left for the last " + (count - i)
+                    + " end states.");
+                return;
+            }
+            fields[state] = field;
+        }
+    }
+
+    /**
+     * Setter for the seed of the random generator.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Setter for the chance of a field of an open map being an obstacle, 0.2 by default.
+     */
+    public void setObstacleDensity(double obstacleDensity) {
+        this.obstacleDensity = obstacleDensity;
+    }
+
+    /**
+     * Setter for whether a maze is generated instead of an open map. The obstacle density is not used for mazes.
+     *
+     * @param maze whether to generate a maze.
+     * @param loops the chance of a wall between two corridors being knocked out, 0 for a perfect maze.
+     */
+    public void setMaze(boolean maze, double loops) {
+        this.maze = maze;
+        this.loops = loops;
+    }
+
+    /**
+     * Setter for the amount of end states with the positive reward, 1 by default.
+     */
+    public void setGoals(int goals) {
+        this.goals = Math.max(0, goals);
+    }
+
+    /**
+     * Setter for the amount of end states with the negative reward, 0 by default.
+     */
+    public void setTraps(int traps) {
+        this.traps = Math.max(0, traps);
+    }
+
+    /**
+     * Setter for the rewards given to the generated mdp.
+     *
+     * @param posReward the reward of the goals, 1 by default.
+     * @param negReward the reward of the traps, -1 by default.
+     * @param noReward the reward of the other fields, -0.04 by default.
+     */
+    public void setRewards(double posReward, double negReward, double noReward) {
+        this.posReward = posReward;
+        this.negReward = negReward;
+        this.noReward = noReward;
+    }
+}
@@ -0,0 +1,508 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes maps as files, so large maps do not have to be built with setField calls and can be versioned.
+ * Files are streamed through a fixed size buffer straight into the primitive arrays, so loading a map allocates
+ * nothing per field and the memory used is just the map itself.
+ *
+ * The text format starts with a line holding the width and height, followed by one line per row of the grid,
+ * the top row (highest y) first, one character per field: '.' empty, '#' obstacle, '+' reward, '-' negative reward
+ * and 'S' an empty field where the agent starts. Lines starting with ';' are comments.
+ * A map needs at least one end state, and without an 'S' the field at (0, 0) should be empty, since the agent starts there.
+ *
+ * The binary format holds a TabularMDP and is big endian: magic "MDPT" (int), version (int), the amount of states,
+ * action rows and successor entries (ints), then the arrays of TabularMDP in order: state rewards (doubles),
+ * action starts, actions, successor starts, successors (ints), probabilities and rewards (doubles).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MapLoader {
+
+    public static final int MAGIC = 0x4D445054;
+    public static final int VERSION = 1;
+    private static final int HEADER = 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private MapLoader() {
+    }
+
+    /**
+     * Receives the fields of a text map as they are read.
+     */
+    private interface FieldSink {
+        void put(long index, byte field);
+    }
+
+    /**
+     * Reads a text map into a new mdp.
+     *
+     * @param file the text map.
+     * @param headless if true the mdp is never drawn.
+     * @return the mdp with the landscape and start position of the map and default settings otherwise.
+     *         Without an 'S' the agent starts at (0, 0), which should then be an empty field.
+     * @throws IOException if the file can not be read or is not a valid map.
+     */
+    public static MarkovDecisionProblem readAscii(Path file, boolean headless) throws IOException {
+        try (TextInput in = new TextInput(file)) {
+            int width = in.readInt();
+            int height = in.readInt();
+            if ((long) width * height > Integer.MAX_VALUE - 8) {
+                throw new IOException(file + ": a " + width + "x" + height + " map does not fit in memory, read it into a MappedLandscape");
+            }
+            byte[] fields = new byte[width * height];
+            long start = readGrid(in, width, height, (index, field) -> fields[(int) index] = field);
+            if (start < 0 && fields[0] != Field.EMPTY.ordinal()) {
+                throw new IOException(file + ": the map has no start 'S' and the default start (0, 0) is not an empty field");
+            }
+            // the mdp takes the filled array over, so the landscape is only allocated once
+            MarkovDecisionProblem mdp = new MarkovDecisionProblem(width, height, fields, headless);
+            if (start >= 0) {
+                mdp.setInitialState((int) (start % width), (int) (start / width));
+                mdp.restart();
+            }
+            return mdp;
+        }
+    }
+
+    /**
+     * Reads a text map into a new memory-mapped landscape, for maps that do not fit in memory.
+     * The start position is not kept, since a landscape file has none.
+     *
+     * @param file the text map.
+     * @param landscapeFile the landscape file to create, overwritten if it exists.
+     * @return the mapped landscape.
+     * @throws IOException if the file can not be read or is not a valid map.
+     */
+    public static MappedLandscape readAscii(Path file, Path landscapeFile) throws IOException {
+        try (TextInput in = new TextInput(file)) {
+            int width = in.readInt();
+            int height = in.readInt();
+            MappedLandscape landscape = MappedLandscape.create(landscapeFile, width, height);
+            try {
+                readGrid(in, width, height, landscape::setCode);
+            } catch (IOException e) {
+                landscape.close();
+                throw e;
+            }
+            return landscape;
+        }
+    }
+
+    /**
+     * Reads the rows of a text map after its size. A map needs at least one end state, or an episode never ends.
+     *
+     * @return the index of the start position, -1 if the map has none.
+     */
+    private static long readGrid(TextInput in, int width, int height, FieldSink sink) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw in.error("the size of the map must be positive, not " + width + "x" + height);
+        }
+        in.endLine("expected only the width and height on the first line");
+        long start = -1;
+        boolean ends = false;
+        for (int y = height - 1; y >= 0; y--) {
+            in.skipComments();
+            long row = (long) y * width;
+            for (int x = 0; x < width; x++) {
+                int c = in.read();
+                Field field;
+                switch (c) {
+                    case '.':
+                        field = Field.EMPTY;
+                        break;
+                    case '#':
+                        field = Field.OBSTACLE;
+                        break;
+                    case '+':
+                        field = Field.REWARD;
+                        ends = true;
+                        break;
+                    case '-':
+                        field = Field.NEGREWARD;
+                        ends = true;
+                        break;
+                    case 'S':
+                        if (start >= 0) {
+                            throw in.error("the map has more than one start");
+                        }
+                        start = row + x;
+                        field = Field.EMPTY;
+                        break;
+                    case -1:
+                    case '\n':
+                    case '\r':
+                        in.unread(c);
+                        throw in.error("the row is shorter than the width " + width);
+                    default:
+                        throw in.error("'" + (char) c + "' is not a field");
+                }
+                sink.put(row + x, (byte) field.ordinal());
+            }
+            in.endLine("the row is longer than the width " + width);
+        }
+        while (in.skipComments()) {
+            in.endLine("the map has more rows than the height " + height);
+        }
+        if (!ends) {
+            throw in.error("the map has no end state ('+' or '-')");
+        }
+        return start;
+    }
+
+    /**
+     * Writes the landscape and start position of an mdp as a text map.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param file the file to write, overwritten if it exists.
+     * @throws IOException if the file can not be written.
+     */
+    public static void writeAscii(MarkovDecisionProblem mdp, Path file) throws IOException {
+        int startX = mdp.getInitialXPosition();
+        int startY = mdp.getInitialYPosition();
+        try (FileChannel channel = create(file)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            String size = mdp.getWidth() + " " + mdp.getHeight() + "\n";
+            for (int i = 0; i < size.length(); i++) {
+                buffer.put((byte) size.charAt(i));
+            }
+            for (int y = mdp.getHeight() - 1; y >= 0; y--) {
+                for (int x = 0; x <= mdp.getWidth(); x++) {
+                    if (!buffer.hasRemaining()) {
+                        write(channel, buffer);
+                    }
+                    if (x == mdp.getWidth()) {
+                        buffer.put((byte) '\n');
+                    } else if (x == startX && y == startY && mdp.getField(x, y) == Field.EMPTY) {
+                        buffer.put((byte) 'S');
+                    } else {
+                        buffer.put(getSymbol(mdp.getField(x, y)));
+                    }
+                }
+            }
+            write(channel, buffer);
+        }
+    }
+
+    /**
+     * Getter for the character of a field in the text format.
+     */
+    private static byte getSymbol(Field field) {
+        switch (field) {
+            case OBSTACLE:
+                return '#';
+            case REWARD:
+                return '+';
+            case NEGREWARD:
+                return '-';
+            default:
+                return '.';
+        }
+    }
+
+    /**
+     * Reads a binary model. All arrays are checked before the model is made.
+     *
+     * @param file the binary model.
+     * @return the model.
+     * @throws IOException if the file can not be read or is not a valid model.
+     */
+    public static TabularMDP readBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(HEADER);
+            fill(channel, buffer, file);
+            buffer.flip();
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            int states = buffer.getInt();
+            int rows = buffer.getInt();
+            int entries = buffer.getInt();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException(file + ": not a binary model of version " + VERSION);
+            }
+            if (states < 0 || rows < 0 || entries < 0 || states == Integer.MAX_VALUE || rows == Integer.MAX_VALUE) {
+                throw new IOException(file + ": negative sizes in the header");
+            }
+            long size = HEADER + 8L * states + 4L * (states + 1) + 4L * rows + 4L * (rows + 1) + 20L * entries;
+            if (channel.size() != size) {
+                throw new IOException(file + ": " + channel.size() + " bytes, the header needs " + size);
+            }
+            double[] stateRewards = readDoubles(channel, buffer, new double[states], file);
+            int[] actionStart = readInts(channel, buffer, new int[states + 1], file);
+            int[] actions = readInts(channel, buffer, new int[rows], file);
+            int[] successorStart = readInts(channel, buffer, new int[rows + 1], file);
+            int[] successors = readInts(channel, buffer, new int[entries], file);
+            double[] probabilities = readDoubles(channel, buffer, new double[entries], file);
+            double[] rewards = readDoubles(channel, buffer, new double[entries], file);
+            try {
+                return new TabularMDP(stateRewards, actionStart, actions, successorStart, successors, probabilities, rewards);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a model in the binary format. A TransitionTable can be written too, it is read back as a TabularMDP.
+     *
+     * @param model the model.
+     * @param file the file to write, overwritten if it exists.
+     * @throws IOException if the file can not be written.
+     */
+    public static void writeBinary(TabularMDP model, Path file) throws IOException {
+        int states = model.getStates();
+        int rows = model.getRows();
+        int entries = model.getSuccessorStart(rows);
+        try (FileChannel channel = create(file)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(states).putInt(rows).putInt(entries);
+            for (int s = 0; s < states; s++) {
+                makeRoom(channel, buffer).putDouble(model.getReward(s));
+            }
+            for (int s = 0; s <= states; s++) {
+                makeRoom(channel, buffer).putInt(model.getActionStart(s));
+            }
+            for (int row = 0; row < rows; row++) {
+                makeRoom(channel, buffer).putInt(model.getActionId(row));
+            }
+            for (int row = 0; row <= rows; row++) {
+                makeRoom(channel, buffer).putInt(model.getSuccessorStart(row));
+            }
+            for (int e = 0; e < entries; e++) {
+                makeRoom(channel, buffer).putInt(model.getSuccessor(e));
+            }
+            for (int e = 0; e < entries; e++) {
+                makeRoom(channel, buffer).putDouble(model.getProbability(e));
+            }
+            for (int e = 0; e < entries; e++) {
+                makeRoom(channel, buffer).putDouble(model.getTransitionReward(e));
+            }
+            write(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads ints from the file into the whole array, a buffer at a time.
+     */
+    private static int[] readInts(FileChannel channel, ByteBuffer buffer, int[] into, Path file) throws IOException {
+        int done = 0;
+        while (done < into.length) {
+            int count = Math.min(into.length - done, BUFFER_SIZE / 4);
+            buffer.clear().limit(count * 4);
+            fill(channel, buffer, file);
+            buffer.flip();
+            buffer.asIntBuffer().get(into, done, count);
+            done += count;
+        }
+        return into;
+    }
+
+    /**
+     * Reads doubles from the file into the whole array, a buffer at a time.
+     */
+    private static double[] readDoubles(FileChannel channel, ByteBuffer buffer, double[] into, Path file) throws IOException {
+        int done = 0;
+        while (done < into.length) {
+            int count = Math.min(into.length - done, BUFFER_SIZE / 8);
+            buffer.clear().limit(count * 8);
+            fill(channel, buffer, file);
+            buffer.flip();
+            buffer.asDoubleBuffer().get(into, done, count);
+            done += count;
+        }
+        return into;
+    }
+
+    /**
+     * Reads from the file until the buffer is full.
+     *
+     * @throws IOException if the file ends first.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, Path file) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(file + ": unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Opens a file for writing from the start, removing what was in it.
+     */
+    private static FileChannel create(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes the buffer to the file when it might not have room for another value.
+     *
+     * @return the buffer.
+     */
+    private static ByteBuffer makeRoom(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8) {
+            write(channel, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes everything in the buffer to the file and empties the buffer.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Streams the characters of a text file through a buffer and keeps track of the line for error messages.
+     */
+    private static class TextInput implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long line;
+
+        TextInput(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+            this.line = 1;
+        }
+
+        /**
+         * Reads the next character.
+         *
+         * @return the character, -1 at the end of the file.
+         */
+        int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read;
+                do {
+                    read = channel.read(buffer);
+                } while (read == 0);
+                buffer.flip();
+                if (read < 0) {
+                    return -1;
+                }
+            }
+            int c = buffer.get();
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+
+        /**
+         * Puts back the character that was read last.
+         */
+        void unread(int c) {
+            if (c >= 0) {
+                buffer.position(buffer.position() - 1);
+                if (c == '\n') {
+                    line--;
+                }
+            }
+        }
+
+        /**
+         * Looks at the next character without reading it.
+         *
+         * @return the character, -1 at the end of the file.
+         */
+        int peek() throws IOException {
+            int c = read();
+            unread(c);
+            return c;
+        }
+
+        /**
+         * Skips comment lines and empty lines.
+         *
+         * @return whether there are more characters.
+         */
+        boolean skipComments() throws IOException {
+            int c = peek();
+            while (c == ';' || c == '\n' || c == '\r') {
+                if (c == ';') {
+                    skipLine();
+                } else {
+                    read();
+                }
+                c = peek();
+            }
+            return c >= 0;
+        }
+
+        /**
+         * Reads an int after optional comments and spaces.
+         */
+        int readInt() throws IOException {
+            skipComments();
+            int c = read();
+            while (c == ' ' || c == '\t') {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw error("expected the width and height of the map");
+            }
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + c - '0';
+                if (value > Integer.MAX_VALUE) {
+                    throw error("the size of the map is too large");
+                }
+                c = read();
+            }
+            unread(c);
+            return (int) value;
+        }
+
+        /**
+         * Skips the rest of the line.
+         */
+        void skipLine() throws IOException {
+            int c = read();
+            while (c >= 0 && c != '\n') {
+                c = read();
+            }
+        }
+
+        /**
+         * Reads the end of a line, allowing only a carriage return and spaces before it.
+         */
+        void endLine(String message) throws IOException {
+            int c = read();
+            while (c == '\r' || c == ' ' || c == '\t') {
+                c = read();
+            }
+            if (c >= 0 && c != '\n') {
+                throw error(message);
+            }
+        }
+
+        /**
+         * Makes an exception pointing at the current line.
+         */
+        IOException error(String message) {
+            return new IOException(file + ":" + line + ": " + message);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
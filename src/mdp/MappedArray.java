@@ -0,0 +1,189 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file mapped into memory, addressed by long byte offsets.
+ * A single mapping is limited to 2GB, so the file is mapped in chunks of 1GB.
+ * The data lives outside of the heap and is written back to the file by the operating system.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MappedArray implements Closeable {
+
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int FILL_BLOCK = 1 << 16;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] chunks;
+    private long size;
+    private boolean readOnly;
+
+    /**
+     * Maps the given file, creating it or growing it to the given size when needed.
+     * Existing contents of the file are kept.
+     *
+     * @param file the file to map.
+     * @param size the amount of bytes to map.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    public MappedArray(Path file, long size) throws IOException {
+        this(file, size, false);
+    }
+
+    /**
+     * Maps the given file. When read only the file should exist and be at least the given size,
+     * otherwise it is created or grown to the given size when needed. Existing contents of the file are kept.
+     *
+     * @param file the file to map.
+     * @param size the amount of bytes to map.
+     * @param readOnly whether the file is only read.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    public MappedArray(Path file, long size, boolean readOnly) throws IOException {
+        this.size = size;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        } else {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        int count = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        this.chunks = new MappedByteBuffer[count];
+        for (int c = 0; c < count; c++) {
+            long start = (long) c << CHUNK_BITS;
+            chunks[c] = channel.map(mode, start, Math.min(CHUNK_SIZE, size - start));
+        }
+    }
+
+    /**
+     * Getter for a byte.
+     *
+     * @param offset the position in the file.
+     * @return the byte at that position.
+     */
+    public byte getByte(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Setter for a byte.
+     *
+     * @param offset the position in the file.
+     * @param value the new byte.
+     */
+    public void putByte(long offset, byte value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].put((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Getter for an int. The offset should be a multiple of 4 so it does not cross two chunks.
+     */
+    public int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Setter for an int. The offset should be a multiple of 4 so it does not cross two chunks.
+     */
+    public void putInt(long offset, int value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Getter for a float. The offset should be a multiple of 4 so it does not cross two chunks.
+     */
+    public float getFloat(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getFloat((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Setter for a float. The offset should be a multiple of 4 so it does not cross two chunks.
+     */
+    public void putFloat(long offset, float value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putFloat((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Getter for a double. The offset should be a multiple of 8 so it does not cross two chunks.
+     */
+    public double getDouble(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getDouble((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Setter for a double. The offset should be a multiple of 8 so it does not cross two chunks.
+     */
+    public void putDouble(long offset, double value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putDouble((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Sets all bytes in the given range to the same value.
+     * The range is written chunk by chunk in blocks, instead of one byte at a time.
+     *
+     * @param from the first position to set.
+     * @param to the position after the last one to set.
+     * @param value the new byte.
+     */
+    public void fill(long from, long to, byte value) {
+        if (from >= to) {
+            return;
+        }
+        byte[] block = new byte[(int) Math.min(FILL_BLOCK, to - from)];
+        Arrays.fill(block, value);
+        long offset = from;
+        while (offset < to) {
+            int chunk = (int) (offset >>> CHUNK_BITS);
+            long chunkEnd = Math.min(to, ((long) chunk + 1) << CHUNK_BITS);
+            ByteBuffer buffer = chunks[chunk].duplicate();
+            buffer.position((int) (offset & CHUNK_MASK));
+            while (offset < chunkEnd) {
+                int length = (int) Math.min(block.length, chunkEnd - offset);
+                buffer.put(block, 0, length);
+                offset += length;
+            }
+        }
+    }
+
+    /**
+     * Getter for the amount of mapped bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes all changes back to the file.
+     */
+    public void force() {
+        if (readOnly) {
+            return;
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Writes all changes back and closes the file.
+     * The mapping itself is released once it is garbage collected.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
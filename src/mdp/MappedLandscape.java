@@ -0,0 +1,168 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * A landscape of fields kept in a memory-mapped file instead of on the heap, for grids that do not fit in memory.
+ * The file starts with the width and height (two ints), followed by one byte per field (the Field ordinal),
+ * row by row (index = y * width + x), the same encoding MarkovDecisionProblem uses in memory.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MappedLandscape implements Closeable {
+
+    public static final int HEADER = 8;
+    private static final Field[] FIELDS = Field.values();
+
+    private MappedArray fields;
+    private int width;
+    private int height;
+
+    /**
+     * Maps the landscape in the given file.
+     */
+    private MappedLandscape(MappedArray fields, int width, int height) {
+        this.fields = fields;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates a new landscape file with all fields set to Field.EMPTY.
+     *
+     * @param file the file to create, overwritten if it exists.
+     * @param width the width of the landscape.
+     * @param height the height of the landscape.
+     * @return the mapped landscape.
+     * @throws IOException if the file can not be written.
+     */
+    public static MappedLandscape create(Path file, int width, int height) throws IOException {
+        Files.deleteIfExists(file);
+        MappedArray fields = new MappedArray(file, HEADER + (long) width * height);
+        fields.putInt(0, width);
+        fields.putInt(4, height);
+        fields.fill(HEADER, fields.size(), (byte) Field.EMPTY.ordinal());
+        return new MappedLandscape(fields, width, height);
+    }
+
+    /**
+     * Creates a new landscape file holding a copy of the landscape of the given mdp.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param file the file to create, overwritten if it exists.
+     * @return the mapped landscape.
+     * @throws IOException if the file can not be written.
+     */
+    public static MappedLandscape of(MarkovDecisionProblem mdp, Path file) throws IOException {
+        MappedLandscape landscape = create(file, mdp.getWidth(), mdp.getHeight());
+        for (int y = 0; y < mdp.getHeight(); y++) {
+            for (int x = 0; x < mdp.getWidth(); x++) {
+                landscape.setField(x, y, mdp.getField(x, y));
+            }
+        }
+        return landscape;
+    }
+
+    /**
+     * Maps an existing landscape file.
+     *
+     * @param file the file written by create() or of().
+     * @return the mapped landscape.
+     * @throws IOException if the file does not exist, can not be read or is too short for its dimensions.
+     */
+    public static MappedLandscape open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+        if (Files.size(file) < HEADER) {
+            throw new IOException("not a landscape file: " + file);
+        }
+        // read only, so a wrong path is never created or grown
+        MappedArray header = new MappedArray(file, HEADER, true);
+        int width = header.getInt(0);
+        int height = header.getInt(4);
+        header.close();
+        long size = HEADER + (long) width * height;
+        if (width <= 0 || height <= 0 || Files.size(file) < size) {
+            throw new IOException("not a landscape file: " + file);
+        }
+        return new MappedLandscape(new MappedArray(file, size), width, height);
+    }
+
+    /**
+     * Returns the field with the given x and y coordinates
+     *
+     * @param xpos, should fall within the landscape
+     * @param ypos, should fall within the landscape
+     */
+    public Field getField(int xpos, int ypos) {
+        if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height) {
+            return FIELDS[getCode((long) ypos * width + xpos)];
+        }
+        return Field.OUTOFBOUNDS;
+    }
+
+    /**
+     * Sets the field with the given x and y coordinate to the given field.
+     */
+    public void setField(int xpos, int ypos, Field field) {
+        if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height) {
+            fields.putByte(HEADER + (long) ypos * width + xpos, (byte) field.ordinal());
+        }
+    }
+
+    /**
+     * Setter for the Field ordinal of a state, without bounds checks.
+     *
+     * @param index the index of the state (y * width + x).
+     * @param code the ordinal of the field.
+     */
+    public void setCode(long index, byte code) {
+        fields.putByte(HEADER + index, code);
+    }
+
+    /**
+     * Getter for the Field ordinal of a state, without bounds checks.
+     *
+     * @param index the index of the state (y * width + x).
+     * @return the ordinal of the field.
+     */
+    public byte getCode(long index) {
+        return fields.getByte(HEADER + index);
+    }
+
+    /**
+     * Returns the width of the landscape
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the landscape
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Writes all changes back to the file.
+     */
+    public void force() {
+        fields.force();
+    }
+
+    /**
+     * Writes all changes back and closes the file.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        fields.close();
+    }
+}
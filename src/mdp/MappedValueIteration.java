@@ -0,0 +1,287 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Value Iteration for grids that do not fit in memory.
+ * The landscape, the values and the policy all live in memory-mapped files, and the transitions are worked out
+ * from the fields on the fly instead of being compiled into a TransitionTable. The sweeps go row by row through the
+ * files, so only the few rows around the current one have to be in memory at a time.
+ *
+ * The value and policy files start with the width and height (two ints), followed by one float value
+ * and one byte (Action ordinal, -1 for none) per state, row by row. They are kept after closing,
+ * so opening them again gives the solved policy back without solving, and solving again starts from the stored values.
+ *
+ * The dynamics are the same as those of the TransitionTable: a blocked move leaves the agent where it is
+ * and end states are worth just their reward.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MappedValueIteration implements SolvedPolicy, Closeable {
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final int[] DX = new int[]{0, 0, -1, 1, 0};    // indexed by Action ordinal
+    private static final int[] DY = new int[]{1, -1, 0, 0, 0};
+    private static final byte EMPTY = (byte) Field.EMPTY.ordinal();
+    private static final byte REWARD = (byte) Field.REWARD.ordinal();
+    private static final byte NEGREWARD = (byte) Field.NEGREWARD.ordinal();
+    private static final byte OBSTACLE = (byte) Field.OBSTACLE.ordinal();
+    private static final byte NO_ACTION = -1;
+
+    private MappedLandscape landscape;
+    private MappedArray values;
+    private MappedArray policy;
+    private int width;
+    private int height;
+    private int[][] outcomes;    // Action ordinals of the outcomes of each move, in the order of getProbs()
+    private double[] probDistribution;
+    private double posReward;
+    private double negReward;
+    private double noReward;
+    private double discount;
+    private int iterations;
+    private double epsilon;
+    private int sweeps;
+    private double residual;
+
+    /**
+     * Constructor of the out-of-core value iteration. Maps the value and policy files, creating them if needed.
+     * Nothing is calculated yet; set the rewards and probabilities (e.g. with setParameters) and call solve().
+     *
+     * @param landscape the mapped landscape to solve.
+     * @param valueFile the file for the values.
+     * @param policyFile the file for the policy.
+     * @throws IOException if the files can not be mapped.
+     */
+    public MappedValueIteration(MappedLandscape landscape, Path valueFile, Path policyFile) throws IOException {
+        this.landscape = landscape;
+        this.width = landscape.getWidth();
+        this.height = landscape.getHeight();
+        long states = (long) width * height;
+        this.values = mapResult(valueFile, MappedLandscape.HEADER + states * 4, (byte) 0);
+        this.policy = mapResult(policyFile, MappedLandscape.HEADER + states, NO_ACTION);
+        this.outcomes = new int[4][];
+        for (int m = 0; m < 4; m++) {
+            Action move = ACTIONS[m];
+            outcomes[m] = new int[]{m, Action.previousAction(move).ordinal(), Action.nextAction(move).ordinal(),
+                Action.backAction(move).ordinal(), Action.NOTHING.ordinal()};
+        }
+        this.probDistribution = new double[]{0.9, 0.05, 0.05, 0, 0};
+        this.posReward = 1;
+        this.negReward = -1;
+        this.noReward = -0.04;
+        this.discount = 0.86;
+        this.iterations = 1000;
+        this.epsilon = 0;
+    }
+
+    /**
+     * Maps a result file. If it is new or was made for another size it is started over.
+     *
+     * @param file the file to map.
+     * @param size the size of the file in bytes.
+     * @param empty the byte every state starts with: 0 for the values, NO_ACTION for the policy.
+     */
+    private MappedArray mapResult(Path file, long size, byte empty) throws IOException {
+        boolean existed = Files.exists(file) && Files.size(file) > 0;
+        MappedArray result = new MappedArray(file, size);
+        if (result.getInt(0) != width || result.getInt(4) != height) {
+            // a new file is already all zeros, which only reads as empty for the values
+            if (existed || empty != 0) {
+                result.fill(MappedLandscape.HEADER, size, empty);
+            }
+            result.putInt(0, width);
+            result.putInt(4, height);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the rewards and action probabilities of the given mdp.
+     *
+     * @param mdp the markov decision problem with the wanted settings, its own landscape is not used.
+     */
+    public void setParameters(MarkovDecisionProblem mdp) {
+        this.probDistribution = mdp.getProbs();
+        this.posReward = mdp.getPosReward();
+        this.negReward = mdp.getNegReward();
+        this.noReward = mdp.getNoReward();
+    }
+
+    /**
+     * Sweeps in place over the rows of the landscape until the maximum amount of iterations is reached
+     * or the largest change of a value drops below epsilon. Then writes the policy and flushes both files.
+     */
+    public void solve() {
+        sweeps = 0;
+        residual = Double.POSITIVE_INFINITY;
+        while (sweeps < iterations) {
+            residual = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    long index = (long) y * width + x;
+                    double value = backup(x, y, index, false);
+                    long offset = MappedLandscape.HEADER + index * 4;
+                    float stored = (float) value;
+                    residual = Math.max(residual, Math.abs(stored - values.getFloat(offset)));
+                    values.putFloat(offset, stored);
+                }
+            }
+            sweeps++;
+            if (residual < epsilon) {
+                break;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long index = (long) y * width + x;
+                backup(x, y, index, true);
+            }
+        }
+        values.force();
+        policy.force();
+    }
+
+    /**
+     * Calculates the Bellman backup of a state from the mapped values.
+     *
+     * @param x X coordinate of the state in the grid world.
+     * @param y Y coordinate of the state in the grid world.
+     * @param index the index of the state (y * width + x).
+     * @param storePolicy whether the best action should be written to the policy file.
+     * @return the new value of the state.
+     */
+    private double backup(int x, int y, long index, boolean storePolicy) {
+        byte code = landscape.getCode(index);
+        byte best = NO_ACTION;
+        double bestValue;
+        if (code == REWARD) {
+            bestValue = posReward;
+        } else if (code == NEGREWARD) {
+            bestValue = negReward;
+        } else if (code != EMPTY) {
+            bestValue = 0;
+        } else {
+            bestValue = Double.NEGATIVE_INFINITY;
+            for (int m = 0; m < 4; m++) {
+                if (!isOpen(x + DX[m], y + DY[m])) {
+                    // the same actions as the TransitionTable: no moves into walls
+                    continue;
+                }
+                double expectedValue = 0;
+                for (int o = 0; o < 5; o++) {
+                    if (probDistribution[o] <= 0) {
+                        continue;
+                    }
+                    int nx = x + DX[outcomes[m][o]];
+                    int ny = y + DY[outcomes[m][o]];
+                    long next = isOpen(nx, ny) ? (long) ny * width + nx : index;
+                    expectedValue += probDistribution[o] * values.getFloat(MappedLandscape.HEADER + next * 4);
+                }
+                double value = noReward + discount * expectedValue;
+                if (best < 0 || bestValue < value) {
+                    bestValue = value;
+                    best = (byte) m;
+                }
+            }
+            if (best < 0) {
+                // walled in, every move stays in place like the UP row of the TransitionTable
+                bestValue = noReward + discount * values.getFloat(MappedLandscape.HEADER + index * 4);
+                best = (byte) Action.UP.ordinal();
+            }
+        }
+        if (storePolicy) {
+            policy.putByte(MappedLandscape.HEADER + index, best);
+        }
+        return bestValue;
+    }
+
+    /**
+     * Checks whether the given position is within the landscape and not an obstacle.
+     */
+    private boolean isOpen(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && landscape.getCode((long) y * width + x) != OBSTACLE;
+    }
+
+    /**
+     * Gets the action according to the calculated (or stored) policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the most valuable action in the state.
+     */
+    @Override
+    public Action getAction(int xpos, int ypos) {
+        byte action = policy.getByte(MappedLandscape.HEADER + (long) ypos * width + xpos);
+        return action < 0 ? null : ACTIONS[action];
+    }
+
+    /**
+     * Gets the calculated (or stored) value of a state.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    @Override
+    public double getValue(int xpos, int ypos) {
+        return values.getFloat(MappedLandscape.HEADER + ((long) ypos * width + xpos) * 4);
+    }
+
+    /**
+     * Getter for the amount of sweeps made by the last solve.
+     */
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * Getter for the largest change of a value in the last sweep.
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Setter for the maximum amount of sweeps.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Setter for the convergence epsilon. Since the values are stored as floats it should not be too small.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Setter for the discount factor.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Getter for the discount factor.
+     */
+    @Override
+    public double getDiscount() {
+        return discount;
+    }
+
+    /**
+     * Writes the values and policy back and closes their files. The landscape stays open.
+     *
+     * @throws IOException if the files can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        values.close();
+        policy.close();
+    }
+}
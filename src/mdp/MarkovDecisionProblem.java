@@ -1,7 +1,8 @@
 package mdp;
 
-import java.util.Random;
-import javax.swing.JFrame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Basic class that contains and displays a Markov Decision Problem with grid positions in a landscape as states.
@@ -9,6 +10,10 @@ import javax.swing.JFrame;
  *
  * Also contains and updates an agent that can roam around in the MDP.
  *
+ * A headless MDP never draws itself or waits, and never loads the display classes,
+ * so it can be simulated at full speed on machines without a display.
+ * By default an MDP is headless when the JVM runs with -Djava.awt.headless=true.
+ *
  * @author Jered Vroon
  * @co-author David Leeftink and Mantas Makelis
  */
@@ -17,8 +22,11 @@ public class MarkovDecisionProblem {
     /// FIELDS
     /////////////////////////////////////////////////////////
 
-    // The collection of grid positions that can be visited:
-    private Field[][] landscape;
+    private static final Field[] FIELDS = Field.values();
+    private static final byte OBSTACLE = (byte) Field.OBSTACLE.ordinal();
+
+    // The collection of grid positions that can be visited, row by row (index = y * width + x) as Field ordinals:
+    private byte[] landscape;
     private int width = 4,
         height = 3;
 
@@ -34,8 +42,8 @@ public class MarkovDecisionProblem {
     // Boolean determining if Actions are performed deterministically or not
     private boolean deterministic = false;
 
-    // Random number generator for doing the Actions stochastically:
-    private static Random rand = new Random();
+    // Random number generator for doing the Actions stochastically, one per MDP so MDPs can be simulated in parallel:
+    private SplittableRandom rand = new SplittableRandom();
 
     // ... and the probabilities for each (mis)interpretation of each Action:
     private double pPerform = 0.8,  // probability of action being executed as planned
@@ -43,6 +51,9 @@ public class MarkovDecisionProblem {
         pBackstep = 0,    // probability of the inverse action being executed
         pNoStep = 0;    // probability of no action being executed
     // These four probabilities should add up to 1
+    // ... and their running totals, the outcome of a random number below thresholds[o] (and not a lower one) is o:
+    // the action itself, the previous action, the next action, the inverse action and else no action
+    private double[] thresholds = new double[4];
 
     // The rewards given for each state:
     private double posReward = 1,    // reward for positive end state
@@ -57,6 +68,8 @@ public class MarkovDecisionProblem {
     // The time that is waited between drawing each action performed:
     private int waittime = 500;
     private boolean showProgress = true;
+    // Whether this MDP is never displayed at all:
+    private boolean headless;
 
     // Counts the number of actions that has been performed
     private int actionsCounter = 0;
@@ -65,6 +78,9 @@ public class MarkovDecisionProblem {
     private int learningIterations;
     private double cumulativeReward;
 
+    // The listeners that get notified when the landscape or the rewards change
+    private ArrayList<LandscapeListener> listeners = new ArrayList<>();
+
     /////////////////////////////////////////////////////////
     /// FUNCTIONS
     /////////////////////////////////////////////////////////
@@ -75,18 +91,26 @@ public class MarkovDecisionProblem {
      * (the one described in Chapter 17 of Russell & Norvig)
      */
     public MarkovDecisionProblem() {
+        this(Boolean.getBoolean("java.awt.headless"));
+    }
+
+    /**
+     * Constructor.
+     * Constructs a basic MDP
+     * (the one described in Chapter 17 of Russell & Norvig)
+     *
+     * @param headless if true the MDP is never drawn (see setHeadless).
+     */
+    public MarkovDecisionProblem(boolean headless) {
+        this.headless = headless;
         defaultSettings();
 
         width = 4;
         height = 3;
 
         // Make and fill the fields:
-        landscape = new Field[width][height];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                landscape[j][i] = Field.EMPTY;
-            }
-        }
+        landscape = new byte[width * height];
+        Arrays.fill(landscape, (byte) Field.EMPTY.ordinal());
         setField(1, 1, Field.OBSTACLE);
         setField(3, 1, Field.NEGREWARD);
         setField(3, 2, Field.REWARD);
@@ -101,18 +125,47 @@ public class MarkovDecisionProblem {
      * All other settings are the same as in the MDP described in Chapter 17 of Russell & Norvig
      */
     public MarkovDecisionProblem(int width, int height) {
+        this(width, height, Boolean.getBoolean("java.awt.headless"));
+    }
+
+    /**
+     * Constructs a basic MDP with the given width and height.
+     * All fields are set to Field.EMPTY.
+     * All other settings are the same as in the MDP described in Chapter 17 of Russell & Norvig
+     *
+     * @param headless if true the MDP is never drawn (see setHeadless).
+     */
+    public MarkovDecisionProblem(int width, int height, boolean headless) {
+        this.headless = headless;
         defaultSettings();
 
         this.width = width;
         this.height = height;
 
         // Make and fill the fields:
-        landscape = new Field[this.width][this.height];
-        for (int i = 0; i < this.height; i++) {
-            for (int j = 0; j < this.width; j++) {
-                landscape[j][i] = Field.EMPTY;
-            }
-        }
+        landscape = new byte[this.width * this.height];
+        Arrays.fill(landscape, (byte) Field.EMPTY.ordinal());
+        pDrawMDP();
+    }
+
+    /**
+     * Constructs a MDP with the given width, height and fields, e.g. a loaded map.
+     * The array is taken over, not copied, so no second landscape is allocated.
+     * All other settings are the same as in the MDP described in Chapter 17 of Russell & Norvig
+     *
+     * @param fields the Field ordinal of every field, row by row (index = y * width + x).
+     * @param headless if true the MDP is never drawn (see setHeadless).
+     * @throws IllegalArgumentException if the array does not match the size of the landscape or holds no field.
+     */
+    public MarkovDecisionProblem(int width, int height, byte[] fields, boolean headless) {
+        this.headless = headless;
+        defaultSettings();
+
+        this.width = width;
+        this.height = height;
+
+        checkLandscape(fields);
+        landscape = fields;
         pDrawMDP();
     }
 
@@ -132,6 +185,7 @@ public class MarkovDecisionProblem {
         pSidestep = 0.1;
         pBackstep = 0;
         pNoStep = 0;
+        updateThresholds();
 
         posReward = 1;
         negReward = -1;
@@ -140,7 +194,7 @@ public class MarkovDecisionProblem {
         terminated = false;
 
         waittime = 50;
-        showProgress = true;
+        showProgress = !headless;
 
         actionsCounter = 0;
     }
@@ -160,17 +214,26 @@ public class MarkovDecisionProblem {
             doAction(action);
         } else {
             double prob = rand.nextDouble();
-            if (prob < pPerform) {
-                doAction(action);
-            } else if (prob < pPerform + pSidestep / 2) {
-
-                doAction(Action.previousAction(action));
-            } else if (prob < pPerform + pSidestep) {
-                doAction(Action.nextAction(action));
-            } else if (prob < pPerform + pSidestep + pBackstep) {
-                doAction(Action.backAction(action));
+            int outcome = 0;
+            while (outcome < 4 && prob >= thresholds[outcome]) {
+                outcome++;
+            }
+            switch (outcome) {
+                case 0:
+                    doAction(action);
+                    break;
+                case 1:
+                    doAction(Action.previousAction(action));
+                    break;
+                case 2:
+                    doAction(Action.nextAction(action));
+                    break;
+                case 3:
+                    doAction(Action.backAction(action));
+                    break;
+                default:
+                    // do nothing (i.e. stay where you are)
             }
-            // else: do nothing (i.e. stay where you are)
         }
         actionsCounter++;
         pDrawMDP();
@@ -202,7 +265,7 @@ public class MarkovDecisionProblem {
      * Moves the agent up (if possible).
      */
     private void moveUp() {
-        if (yPosition < (height - 1) && landscape[xPosition][yPosition + 1] != Field.OBSTACLE) {
+        if (yPosition < (height - 1) && landscape[(yPosition + 1) * width + xPosition] != OBSTACLE) {
             yPosition++;
         }
     }
@@ -211,7 +274,7 @@ public class MarkovDecisionProblem {
      * Moves the agent down (if possible).
      */
     private void moveDown() {
-        if (yPosition > 0 && landscape[xPosition][yPosition - 1] != Field.OBSTACLE) {
+        if (yPosition > 0 && landscape[(yPosition - 1) * width + xPosition] != OBSTACLE) {
             yPosition--;
         }
     }
@@ -220,7 +283,7 @@ public class MarkovDecisionProblem {
      * Moves the agent left (if possible).
      */
     private void moveLeft() {
-        if (xPosition > 0 && landscape[xPosition - 1][yPosition] != Field.OBSTACLE) {
+        if (xPosition > 0 && landscape[yPosition * width + xPosition - 1] != OBSTACLE) {
             xPosition--;
         }
     }
@@ -229,7 +292,7 @@ public class MarkovDecisionProblem {
      * Moves the agent right (if possible).
      */
     private void moveRight() {
-        if (xPosition < (width - 1) && landscape[xPosition + 1][yPosition] != Field.OBSTACLE) {
+        if (xPosition < (width - 1) && landscape[yPosition * width + xPosition + 1] != OBSTACLE) {
             xPosition++;
         }
     }
@@ -256,7 +319,7 @@ public class MarkovDecisionProblem {
 //            return 0;
 //        }
 
-        switch (landscape[xPosition][yPosition]) {
+        switch (FIELDS[landscape[yPosition * width + xPosition]]) {
             case EMPTY:
                 return noReward;
             case REWARD:
@@ -282,12 +345,45 @@ public class MarkovDecisionProblem {
      * Updates the visual display.
      */
     public void setField(int xpos, int ypos, Field field) {
-        if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height) {
-            landscape[xpos][ypos] = field;
+        if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height && landscape[ypos * width + xpos] != field.ordinal()) {
+            landscape[ypos * width + xpos] = (byte) field.ordinal();
+            for (LandscapeListener listener : listeners) {
+                listener.fieldChanged(xpos, ypos);
+            }
         }
         pDrawMDP();
     }
 
+    /**
+     * Sets all fields at once, e.g. after loading a map, instead of one setField per field.
+     * The array is taken over, not copied. Listeners are told every state may have changed and the display is updated once.
+     *
+     * @param fields the Field ordinal of every field, row by row (index = y * width + x).
+     * @throws IllegalArgumentException if the array does not match the size of the landscape or holds no field.
+     */
+    public void setLandscape(byte[] fields) {
+        checkLandscape(fields);
+        landscape = fields;
+        fireModelChanged();
+        pDrawMDP();
+    }
+
+    /**
+     * Checks that an array of fields fills the landscape and holds only field codes.
+     *
+     * @throws IllegalArgumentException if it does not.
+     */
+    private void checkLandscape(byte[] fields) {
+        if (fields.length != width * height) {
+            throw new IllegalArgumentException(fields.length + " fields do not fill a " + width + "x" + height + " landscape");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] < 0 || fields[i] >= Field.OUTOFBOUNDS.ordinal()) {
+                throw new IllegalArgumentException("Field " + i + " has no field code: " + fields[i]);
+            }
+        }
+    }
+
     /**
      * Moves the agent to the given state (x and y coordinate)
      */
@@ -305,6 +401,35 @@ public class MarkovDecisionProblem {
         initYPos = ypos;
     }
 
+    /**
+     * Works out the running totals of the outcome probabilities, after the probabilities changed.
+     */
+    private void updateThresholds() {
+        thresholds[0] = pPerform;
+        thresholds[1] = pPerform + pSidestep / 2;
+        thresholds[2] = pPerform + pSidestep;
+        thresholds[3] = pPerform + pSidestep + pBackstep;
+    }
+
+    /**
+     * Sets the seed of the random numbers of this MDP, so the outcomes of the actions can be replayed.
+     *
+     * @param seed the seed, the same seed and actions give the same outcomes.
+     */
+    public void setSeed(long seed) {
+        rand = new SplittableRandom(seed);
+    }
+
+    /**
+     * Sets the random number generator of this MDP, e.g. one split off from a generator of a parallel simulation
+     * so every MDP draws from its own independent stream.
+     *
+     * @param rand the random number generator, used by this MDP only.
+     */
+    public void setRandom(SplittableRandom rand) {
+        this.rand = rand;
+    }
+
     /**
      * makes this MDP deterministic
      * (i.e. actions have certain outcomes)
@@ -332,13 +457,15 @@ public class MarkovDecisionProblem {
      */
     public void setProbsStep(double pPerform, double pSidestep, double pBackstep, double pNoStep) {
         double total = pPerform + pSidestep + pBackstep + pNoStep;
-        if (total == 1.0) {
+        if (Math.abs(total - 1.0) > 1e-9) {
             System.err.println("ERROR: MDP: setProbsStep: the given probabilities do not add up to 1. I will normalize to compensate.");
         }
         this.pPerform = pPerform / total;
         this.pSidestep = pSidestep / total;
         this.pBackstep = pBackstep / total;
         this.pNoStep = pNoStep / total;
+        updateThresholds();
+        fireModelChanged();
     }
 
     /**
@@ -346,6 +473,7 @@ public class MarkovDecisionProblem {
      */
     public void setPosReward(double posReward) {
         this.posReward = posReward;
+        fireModelChanged();
     }
 
     /**
@@ -353,6 +481,7 @@ public class MarkovDecisionProblem {
      */
     public void setNegReward(double negReward) {
         this.negReward = negReward;
+        fireModelChanged();
     }
 
     /**
@@ -360,6 +489,30 @@ public class MarkovDecisionProblem {
      */
     public void setNoReward(double noReward) {
         this.noReward = noReward;
+        fireModelChanged();
+    }
+
+    /**
+     * Registers a listener that gets notified when the landscape or the rewards change.
+     */
+    public void addLandscapeListener(LandscapeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a registered listener.
+     */
+    public void removeLandscapeListener(LandscapeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Private method used to tell all listeners that every state may have changed.
+     */
+    private void fireModelChanged() {
+        for (LandscapeListener listener : listeners) {
+            listener.modelChanged();
+        }
     }
 
     /////////////////////////////////////////////////////////
@@ -396,6 +549,20 @@ public class MarkovDecisionProblem {
         return yPosition;
     }
 
+    /**
+     * Returns the x-position of the state the agent starts in (used in restart() )
+     */
+    public int getInitialXPosition() {
+        return initXPos;
+    }
+
+    /**
+     * Returns the y-position of the state the agent starts in (used in restart() )
+     */
+    public int getInitialYPosition() {
+        return initYPos;
+    }
+
     /**
      * Returns if the MDP has been terminated (i.e. a final state has been reached)
      */
@@ -439,7 +606,7 @@ public class MarkovDecisionProblem {
      */
     public Field getField(int xpos, int ypos) {
         if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height) {
-            return landscape[xpos][ypos];
+            return FIELDS[landscape[ypos * width + xpos]];
         } else {
             System.err.println("ERROR:MDP:getField:you request a field that does not exist!");
             return Field.OUTOFBOUNDS;
@@ -512,7 +679,7 @@ public class MarkovDecisionProblem {
      * Private method used to have this MDP draw itself only if it should show its progress.
      */
     private void pDrawMDP() {
-        if (showProgress) {
+        if (showProgress && !headless) {
             drawMDP();
         }
     }
@@ -522,6 +689,9 @@ public class MarkovDecisionProblem {
      * In that case also waits the waittime.
      */
     public void drawMDP() {
+        if (headless) {
+            return;
+        }
         // (1) sleep
         if (showProgress) {
             Thread.currentThread();
@@ -535,7 +705,6 @@ public class MarkovDecisionProblem {
         // (2) repaint
         if (frame == null) {
             frame = new DrawFrame(this);
-            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setVisible(true);
         } else {
             frame.drawContent();
@@ -557,12 +726,29 @@ public class MarkovDecisionProblem {
     }
 
     /**
-     * Setter to enable/disable the showing of the progress on the display
+     * Setter to enable/disable the showing of the progress on the display.
+     * Has no effect on a headless MDP.
      */
     public void setShowProgress(boolean show) {
         showProgress = show;
     }
 
+    /**
+     * Setter to make this MDP headless. A headless MDP never draws itself, never waits
+     * and never touches the display classes, even when drawMDP() is called.
+     * Turning it off again does not draw right away, only the next change is drawn (if the progress is shown).
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Returns if this MDP is headless (i.e. never drawn).
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
     /**
      * Setter for value landscape.
      *
@@ -590,6 +776,8 @@ public class MarkovDecisionProblem {
         this.pPerform = 1 - epsilon;
         this.pSidestep = epsilon * 2 / 3;
         this.pBackstep = epsilon / 3;
+        updateThresholds();
+        fireModelChanged();
     }
 
     /**
@@ -0,0 +1,168 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the learning progress of QLearning to files while it learns, instead of keeping it in memory.
+ * Two files are written, named after the run so the same run always writes the same files:
+ * run-rewards (the cumulative reward every so many actions) and run-episodes (length, return and exploration rate
+ * of every finished episode). Records go into a fixed size buffer that is written through a file channel when full,
+ * so the memory used does not grow with the length of the run.
+ *
+ * In CSV format the files get the extension .csv and a header line. In binary format they get the extension .bin
+ * and are big endian: magic "MDPM" (int), version (int), the amount of values per record (int), then the records.
+ * A rewards record is the action count (long) and the cumulative reward (double),
+ * an episode record is the episode number (long), length (long), return (double) and exploration rate (double).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MetricsSink implements Closeable {
+
+    public static final int MAGIC = 0x4D44504D;
+    public static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Format {
+        CSV, BINARY
+    }
+
+    private Format format;
+    private FileChannel rewards;
+    private FileChannel episodes;
+    private ByteBuffer rewardBuffer;
+    private ByteBuffer episodeBuffer;
+
+    /**
+     * Creates (or overwrites) the files of a run.
+     *
+     * @param directory the directory to write the files to.
+     * @param run the name of the run, the files are named run-rewards and run-episodes.
+     * @param format the format of the files.
+     * @throws IOException if the files can not be created.
+     */
+    public MetricsSink(Path directory, String run, Format format) throws IOException {
+        this.format = format;
+        String extension = format == Format.CSV ? ".csv" : ".bin";
+        this.rewardBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.episodeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.rewards = open(directory.resolve(run + "-rewards" + extension));
+        try {
+            this.episodes = open(directory.resolve(run + "-episodes" + extension));
+        } catch (IOException e) {
+            rewards.close();
+            throw e;
+        }
+        if (format == Format.CSV) {
+            putText(rewardBuffer, "actions,reward\n");
+            putText(episodeBuffer, "episode,length,return,exploration\n");
+        } else {
+            rewardBuffer.putInt(MAGIC).putInt(VERSION).putInt(2);
+            episodeBuffer.putInt(MAGIC).putInt(VERSION).putInt(4);
+        }
+    }
+
+    /**
+     * Opens a file for writing from the start, removing what was in it.
+     */
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Records the cumulative reward after the given amount of actions.
+     *
+     * @param actions the amount of actions learned from so far.
+     * @param cumulativeReward the total reward of those actions.
+     * @throws IOException if the buffer was full and could not be written.
+     */
+    public void recordReward(long actions, double cumulativeReward) throws IOException {
+        makeRoom(rewards, rewardBuffer);
+        if (format == Format.CSV) {
+            putText(rewardBuffer, actions + "," + cumulativeReward + "\n");
+        } else {
+            rewardBuffer.putLong(actions).putDouble(cumulativeReward);
+        }
+    }
+
+    /**
+     * Records a finished episode.
+     *
+     * @param episode the number of the episode, starting at 1.
+     * @param length the amount of actions of the episode.
+     * @param episodeReturn the total reward of the episode.
+     * @param exploration the exploration rate at the end of the episode (like epsilon), NaN if there is none.
+     * @throws IOException if the buffer was full and could not be written.
+     */
+    public void recordEpisode(long episode, long length, double episodeReturn, double exploration) throws IOException {
+        makeRoom(episodes, episodeBuffer);
+        if (format == Format.CSV) {
+            putText(episodeBuffer, episode + "," + length + "," + episodeReturn + "," + exploration + "\n");
+        } else {
+            episodeBuffer.putLong(episode).putLong(length).putDouble(episodeReturn).putDouble(exploration);
+        }
+    }
+
+    /**
+     * Writes the buffer to its file when it might not have room for another record.
+     * A CSV record is at most a few numbers of at most 25 characters, a binary record at most 32 bytes.
+     */
+    private static void makeRoom(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 128) {
+            write(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes everything in the buffer to the file and empties the buffer.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Puts ASCII text into a buffer.
+     */
+    private static void putText(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes all buffered records to the files.
+     *
+     * @throws IOException if the files can not be written.
+     */
+    public void flush() throws IOException {
+        write(rewards, rewardBuffer);
+        write(episodes, episodeBuffer);
+    }
+
+    /**
+     * Writes all buffered records and closes the files.
+     *
+     * @throws IOException if the files can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            // the episodes file is closed even when closing the rewards file fails
+            try {
+                rewards.close();
+            } finally {
+                episodes.close();
+            }
+        }
+    }
+}
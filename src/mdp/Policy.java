@@ -0,0 +1,18 @@
+package mdp;
+
+/**
+ * A policy for the grid world: tells which action to take in every state.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public interface Policy {
+
+    /**
+     * Gets the action according to the policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the action to take in the state, null if there is nothing to do (obstacles and end states).
+     */
+    Action getAction(int xpos, int ypos);
+}
@@ -0,0 +1,470 @@
+package mdp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures how good a policy is by simulating many episodes of it (Monte-Carlo evaluation).
+ * Reports the mean return with its variance and confidence interval, the success rate (episodes ending in a
+ * Field.REWARD) and the mean episode length, in total and per start state.
+ *
+ * The episodes are simulated by worker threads, each with its own BatchEnvironment of many agents and its own seed,
+ * in rounds; after every round the statistics of the workers are merged and the evaluation stops when the
+ * confidence interval of the mean return is narrow enough, or when the maximum amount of episodes is reached.
+ * Episodes that take longer than the maximum length (a policy walking in circles) are cut off and counted as truncated.
+ *
+ * The return of an episode is the sum of the rewards of the fields entered, the t-th discounted by discount^t.
+ * The policy is called from several threads at once, so it should not change while evaluating
+ * (ValueIteration, PolicyIteration and a QLearning that is not learning are fine).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class PolicyEvaluator {
+
+    private MarkovDecisionProblem mdp;
+    private List<Integer> starts = new ArrayList<>();
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int agents = 64;
+    private int roundSteps = 1000;
+    private double discount = 1;
+    private int maxLength = 10000;
+    private long minEpisodes = 1000;
+    private long maxEpisodes = 1000000;
+    private double targetWidth;
+    private double z = 1.96;
+    private long seed;
+
+    private int[] evaluatedStarts;
+    private Statistics total;
+    private Statistics[] perStart;
+
+    /**
+     * Constructor of the evaluator. The episodes start in the initial state of the mdp, see setStart and setAllStarts.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     */
+    public PolicyEvaluator(MarkovDecisionProblem mdp) {
+        this.mdp = mdp;
+    }
+
+    /**
+     * Evaluates the policy. The results are available through the getters afterwards.
+     *
+     * @param policy the policy to evaluate.
+     */
+    public void evaluate(Policy policy) {
+        int width = mdp.getWidth();
+        int[] startStates = getStartStates();
+        evaluatedStarts = startStates;
+        boolean[] goal = new boolean[width * mdp.getHeight()];
+        for (int s = 0; s < goal.length; s++) {
+            goal[s] = mdp.getField(s % width, s / width) == Field.REWARD;
+        }
+        total = new Statistics();
+        perStart = new Statistics[startStates.length];
+        for (int i = 0; i < perStart.length; i++) {
+            perStart[i] = new Statistics();
+        }
+
+        List<Worker> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            tasks.add(new Worker(policy, startStates, goal, seed + w * 0x9E3779B97F4A7C15L));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            do {
+                pool.invokeAll(tasks);
+                for (Worker worker : tasks) {
+                    worker.check();
+                    for (int i = 0; i < perStart.length; i++) {
+                        perStart[i].merge(worker.stats[i]);
+                        total.merge(worker.stats[i]);
+                        worker.stats[i] = new Statistics();
+                    }
+                }
+            } while (!isFinished());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks whether enough episodes were simulated.
+     */
+    private boolean isFinished() {
+        if (total.count >= maxEpisodes) {
+            return true;
+        }
+        return targetWidth > 0 && total.count >= minEpisodes && getConfidenceHalfWidth() <= targetWidth;
+    }
+
+    /**
+     * Getter for the state indices (y * width + x) the episodes start in.
+     */
+    private int[] getStartStates() {
+        if (starts.isEmpty()) {
+            return new int[]{mdp.getInitialYPosition() * mdp.getWidth() + mdp.getInitialXPosition()};
+        }
+        int[] startStates = new int[starts.size()];
+        for (int i = 0; i < startStates.length; i++) {
+            startStates[i] = starts.get(i);
+        }
+        return startStates;
+    }
+
+    /**
+     * The simulation of one worker thread, one round per call.
+     */
+    private class Worker implements Callable<Void> {
+
+        private Policy policy;
+        private int[] startStates;
+        private boolean[] goal;
+        private BatchEnvironment env;
+        private int[] startOf;    // per agent, the index of its start state in startStates
+        private double[] returns;
+        private double[] weights;    // per agent, discount^t for the next reward
+        private int[] lengths;
+        private Statistics[] stats;
+        private RuntimeException failure;
+
+        Worker(Policy policy, int[] startStates, boolean[] goal, long seed) {
+            this.policy = policy;
+            this.startStates = startStates;
+            this.goal = goal;
+            this.env = new BatchEnvironment(mdp, agents, seed);
+            this.startOf = new int[agents];
+            this.returns = new double[agents];
+            this.weights = new double[agents];
+            this.lengths = new int[agents];
+            this.stats = new Statistics[startStates.length];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new Statistics();
+            }
+            int width = mdp.getWidth();
+            for (int a = 0; a < agents; a++) {
+                startOf[a] = a % startStates.length;
+                env.setStart(a, startStates[startOf[a]] % width, startStates[startOf[a]] / width);
+                weights[a] = 1;
+            }
+        }
+
+        @Override
+        public Void call() {
+            try {
+                double[] rewards = env.getRewards();
+                boolean[] done = env.getDone();
+                int width = env.getWidth();
+                for (int step = 0; step < roundSteps; step++) {
+                    env.step(policy);
+                    for (int a = 0; a < agents; a++) {
+                        returns[a] += weights[a] * rewards[a];
+                        weights[a] *= discount;
+                        lengths[a]++;
+                        if (done[a]) {
+                            stats[startOf[a]].add(returns[a], lengths[a], goal[env.getFinishedState(a)], false);
+                        } else if (lengths[a] >= maxLength) {
+                            stats[startOf[a]].add(returns[a], lengths[a], false, true);
+                            int start = startStates[startOf[a]];
+                            env.setStart(a, start % width, start / width);
+                        } else {
+                            continue;
+                        }
+                        returns[a] = 0;
+                        weights[a] = 1;
+                        lengths[a] = 0;
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            return null;
+        }
+
+        /**
+         * Passes on a failure of the last round, e.g. of the policy.
+         */
+        void check() {
+            if (failure != null) {
+                throw new IllegalStateException("The evaluation of the policy failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Running statistics of episodes: the mean and the sum of squared differences of the returns (Welford),
+     * which can be merged without losing precision (Chan et al.).
+     */
+    private static class Statistics {
+
+        private long count;
+        private double mean;
+        private double m2;
+        private long successes;
+        private long truncated;
+        private long lengthSum;
+
+        void add(double value, int length, boolean success, boolean cut) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            lengthSum += length;
+            if (success) {
+                successes++;
+            }
+            if (cut) {
+                truncated++;
+            }
+        }
+
+        void merge(Statistics other) {
+            if (other.count == 0) {
+                return;
+            }
+            long merged = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / merged;
+            m2 += other.m2 + delta * delta * count * other.count / merged;
+            count = merged;
+            successes += other.successes;
+            truncated += other.truncated;
+            lengthSum += other.lengthSum;
+        }
+
+        double variance() {
+            return count > 1 ? m2 / (count - 1) : 0;
+        }
+    }
+
+    /**
+     * Prints the results of the last evaluation, in total and per start state.
+     */
+    public void printResults() {
+        System.out.println(String.format("Evaluated %d episodes: mean return %.4f +- %.4f (sd %.4f), success rate %.4f, "
+                + "mean length %.2f, truncated %d", total.count, getMean(), getConfidenceHalfWidth(),
+            Math.sqrt(getVariance()), getSuccessRate(), getMeanLength(), total.truncated));
+        if (perStart.length > 1) {
+            for (int i = 0; i < perStart.length; i++) {
+                System.out.println(String.format("  start (%d, %d): %d episodes, mean return %.4f +- %.4f, success rate %.4f, "
+                    + "mean length %.2f", getStartX(i), getStartY(i), getEpisodes(i), getMean(i), getConfidenceHalfWidth(i),
+                    getSuccessRate(i), getMeanLength(i)));
+            }
+        }
+    }
+
+    /**
+     * Adds a state to start episodes in. The agents are spread evenly over the start states.
+     * Without any start state added, the episodes start in the initial state of the mdp.
+     *
+     * @param xpos X coordinate of the start state.
+     * @param ypos Y coordinate of the start state.
+     */
+    public void setStart(int xpos, int ypos) {
+        starts.add(ypos * mdp.getWidth() + xpos);
+    }
+
+    /**
+     * Makes every state that is not an obstacle or end state a start state.
+     */
+    public void setAllStarts() {
+        starts.clear();
+        for (int y = 0; y < mdp.getHeight(); y++) {
+            for (int x = 0; x < mdp.getWidth(); x++) {
+                if (mdp.getField(x, y) == Field.EMPTY) {
+                    setStart(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Setter for the amount of worker threads, the amount of processors by default.
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Setter for the amount of agents simulated by each worker, 64 by default.
+     */
+    public void setAgents(int agents) {
+        this.agents = agents;
+    }
+
+    /**
+     * Setter for the amount of steps of all agents of a worker between two checks of the stopping condition, 1000 by default.
+     */
+    public void setRoundSteps(int roundSteps) {
+        this.roundSteps = roundSteps;
+    }
+
+    /**
+     * Setter for the discount of the returns, 1 (undiscounted) by default.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Setter for the amount of actions after which an episode is cut off, 10000 by default.
+     */
+    public void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Setter for the least and most amount of episodes, 1000 and 1000000 by default.
+     * The amount is checked after every round, so a few more episodes can be simulated.
+     *
+     * @param minEpisodes the least amount of episodes before stopping on the confidence interval.
+     * @param maxEpisodes the amount of episodes after which the evaluation stops.
+     */
+    public void setEpisodes(long minEpisodes, long maxEpisodes) {
+        this.minEpisodes = minEpisodes;
+        this.maxEpisodes = maxEpisodes;
+    }
+
+    /**
+     * Setter for the confidence interval of the mean return to stop at.
+     *
+     * @param halfWidth the half width of the interval, 0 (the default) for always simulating the maximum amount of episodes.
+     * @param z the z-score of the confidence level, e.g. 1.96 for 95% (the default) or 2.576 for 99%.
+     */
+    public void setConfidence(double halfWidth, double z) {
+        this.targetWidth = halfWidth;
+        this.z = z;
+    }
+
+    /**
+     * Setter for the seed of the random numbers. The seeds of the workers are derived from it.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Getter for the amount of simulated episodes.
+     */
+    public long getEpisodes() {
+        return total.count;
+    }
+
+    /**
+     * Getter for the mean return.
+     */
+    public double getMean() {
+        return total.mean;
+    }
+
+    /**
+     * Getter for the (sample) variance of the returns.
+     */
+    public double getVariance() {
+        return total.variance();
+    }
+
+    /**
+     * Getter for the half width of the confidence interval of the mean return: z * standard error.
+     */
+    public double getConfidenceHalfWidth() {
+        return halfWidth(total);
+    }
+
+    /**
+     * Getter for the share of episodes that ended in a Field.REWARD.
+     */
+    public double getSuccessRate() {
+        return (double) total.successes / total.count;
+    }
+
+    /**
+     * Getter for the mean amount of actions of an episode.
+     */
+    public double getMeanLength() {
+        return (double) total.lengthSum / total.count;
+    }
+
+    /**
+     * Getter for the amount of episodes cut off at the maximum length.
+     */
+    public long getTruncated() {
+        return total.truncated;
+    }
+
+    /**
+     * Getter for the amount of start states of the last evaluation.
+     */
+    public int getStartCount() {
+        return perStart.length;
+    }
+
+    /**
+     * Getter for the x-position of a start state.
+     */
+    public int getStartX(int start) {
+        return evaluatedStarts[start] % mdp.getWidth();
+    }
+
+    /**
+     * Getter for the y-position of a start state.
+     */
+    public int getStartY(int start) {
+        return evaluatedStarts[start] / mdp.getWidth();
+    }
+
+    /**
+     * Getter for the amount of episodes from a start state.
+     */
+    public long getEpisodes(int start) {
+        return perStart[start].count;
+    }
+
+    /**
+     * Getter for the mean return from a start state.
+     */
+    public double getMean(int start) {
+        return perStart[start].mean;
+    }
+
+    /**
+     * Getter for the (sample) variance of the returns from a start state.
+     */
+    public double getVariance(int start) {
+        return perStart[start].variance();
+    }
+
+    /**
+     * Getter for the half width of the confidence interval of the mean return from a start state.
+     */
+    public double getConfidenceHalfWidth(int start) {
+        return halfWidth(perStart[start]);
+    }
+
+    /**
+     * Getter for the share of episodes from a start state that ended in a Field.REWARD.
+     */
+    public double getSuccessRate(int start) {
+        return (double) perStart[start].successes / perStart[start].count;
+    }
+
+    /**
+     * Getter for the mean amount of actions of an episode from a start state.
+     */
+    public double getMeanLength(int start) {
+        return (double) perStart[start].lengthSum / perStart[start].count;
+    }
+
+    /**
+     * The half width of the confidence interval of the mean of the given statistics.
+     */
+    private double halfWidth(Statistics stats) {
+        return stats.count > 1 ? z * Math.sqrt(stats.variance() / stats.count) : Double.POSITIVE_INFINITY;
+    }
+}
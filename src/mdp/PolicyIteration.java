@@ -0,0 +1,325 @@
+package mdp;
+
+/**
+ * A class representing the (modified) Policy Iteration algorithm.
+ * Alternates between evaluating the current policy and greedily improving it, until the policy stops changing.
+ * With a set amount of evaluation sweeps the policy is only evaluated partially (modified policy iteration),
+ * otherwise it is evaluated until the values converge.
+ * Besides grid worlds it solves any TabularMDP, read with getValue(state) and getBestAction(state).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class PolicyIteration implements SolvedPolicy {
+
+    private MarkovDecisionProblem mdp;    // null when solving a TabularMDP directly
+    private TransitionTable table;
+    private TabularMDP model;    // the table for grid worlds
+    private double discount;
+    private double[] values;    // indexed like the model, for grid worlds y * width + x
+    private int[] policy;    // the chosen action row of every state, -1 if it has none
+    private int iterations;
+    private int evaluationSweeps;
+    private int maxEvaluationSweeps;
+    private double epsilon;
+    private int improvements;
+    private int totalEvaluationSweeps;
+    private long complexity;
+
+    /**
+     * Constructor and initializer of the policy iteration.
+     * Assigns starting values and begins the calculations for each state.
+     * When finished, contains the optimal policy for agent to execute.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     */
+    public PolicyIteration(MarkovDecisionProblem mdp) {
+        this(mdp, true);
+    }
+
+    /**
+     * Constructor and initializer of the policy iteration.
+     * When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param solve whether the optimal policy should be calculated right away.
+     */
+    public PolicyIteration(MarkovDecisionProblem mdp, boolean solve) {
+        this.mdp = mdp;
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Constructor and initializer of the policy iteration of a general model.
+     * When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param model the compiled markov decision problem.
+     * @param solve whether the optimal policy should be calculated right away.
+     */
+    public PolicyIteration(TabularMDP model, boolean solve) {
+        this.model = model;
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Sets the default settings.
+     */
+    private void initialise() {
+        this.discount = 0.86;
+        this.iterations = 1000;
+        this.evaluationSweeps = 0;
+        this.maxEvaluationSweeps = 1000;
+        this.epsilon = 1e-6;
+    }
+
+    /**
+     * Calculates the values and the optimal policy with the current settings.
+     * The landscape and probabilities are compiled from the mdp again, so it can be called after the mdp changed.
+     */
+    public void solve() {
+        if (mdp != null) {
+            this.table = new TransitionTable(mdp);
+            this.model = table;
+        }
+        this.values = new double[model.getStates()];
+        this.policy = new int[model.getStates()];
+        for (int s = 0; s < policy.length; s++) {
+            // start with the first possible action of every state
+            int start = model.getActionStart(s);
+            policy[s] = start < model.getActionStart(s + 1) ? start : -1;
+        }
+        this.improvements = 0;
+        this.totalEvaluationSweeps = 0;
+        this.complexity = 0;
+        Calculate();
+        if (mdp != null) {
+            mdp.setValueLandscape(createValueLandscape());
+        }
+    }
+
+    /**
+     * Alternates evaluation and improvement until the policy is stable and its values have converged,
+     * or the maximum amount of improvement steps is reached.
+     */
+    private void Calculate() {
+        while (improvements < iterations) {
+            double residual = evaluate();
+            boolean changed = improve();
+            improvements++;
+            if (!changed && residual < epsilon) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the current policy by in place sweeps over the states.
+     * Makes the set amount of evaluation sweeps, or sweeps until the largest change drops below epsilon when it is 0.
+     *
+     * @return the largest change of a value in the last sweep.
+     */
+    private double evaluate() {
+        int sweeps = evaluationSweeps > 0 ? evaluationSweeps : maxEvaluationSweeps;
+        double residual = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < sweeps; k++) {
+            residual = 0;
+            for (int s = 0; s < values.length; s++) {
+                double value = policy[s] < 0 ? model.getReward(s) : model.qValue(values, s, policy[s], discount);
+                residual = Math.max(residual, Math.abs(value - values[s]));
+                values[s] = value;
+            }
+            totalEvaluationSweeps++;
+            complexity += values.length;
+            if (evaluationSweeps == 0 && residual < epsilon) {
+                break;
+            }
+        }
+        return residual;
+    }
+
+    /**
+     * Makes the policy greedy with respect to the current values.
+     * An action only replaces the current one if it is really better, so ties can not make the policy flip forever.
+     *
+     * @return whether any state changed its action.
+     */
+    private boolean improve() {
+        boolean changed = false;
+        for (int s = 0; s < values.length; s++) {
+            if (policy[s] < 0) {
+                continue;
+            }
+            int best = policy[s];
+            double bestValue = model.qValue(values, s, best, discount);
+            for (int row = model.getActionStart(s); row < model.getActionStart(s + 1); row++) {
+                double value = model.qValue(values, s, row, discount);
+                if (value > bestValue + 1e-12) {
+                    bestValue = value;
+                    best = row;
+                }
+            }
+            complexity += model.getActionStart(s + 1) - model.getActionStart(s);
+            if (best != policy[s]) {
+                policy[s] = best;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Copies the calculated values into the two-dimensional landscape used for displaying.
+     *
+     * @return two-dimensional array with the value of each state of the grid world.
+     */
+    private double[][] createValueLandscape() {
+        double[][] valueLandscape = new double[mdp.getWidth()][mdp.getHeight()];
+        for (int s = 0; s < values.length; s++) {
+            valueLandscape[table.getX(s)][table.getY(s)] = values[s];
+        }
+        return valueLandscape;
+    }
+
+    /**
+     * Getter for the index of a state of the grid world.
+     *
+     * @throws IllegalStateException if a general model is solved, which has no grid, or nothing is solved yet.
+     */
+    private int getIndex(int xpos, int ypos) {
+        if (mdp == null) {
+            throw new IllegalStateException("A general model has no grid, use getValue(state) and getBestAction(state)");
+        }
+        if (table == null) {
+            throw new IllegalStateException("Nothing is solved yet, call solve() first");
+        }
+        return table.getIndex(xpos, ypos);
+    }
+
+    /**
+     * Gets the action according to the pre-calculated policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the most valuable action in the state.
+     */
+    @Override
+    public Action getAction(int xpos, int ypos) {
+        int row = policy[getIndex(xpos, ypos)];
+        return row < 0 ? null : table.getAction(row);
+    }
+
+    /**
+     * Gets the calculated value of a state.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    @Override
+    public double getValue(int xpos, int ypos) {
+        return values[getIndex(xpos, ypos)];
+    }
+
+    /**
+     * Gets the calculated value of a state.
+     *
+     * @param state index of the state in the model.
+     * @return the value of the state.
+     */
+    public double getValue(int state) {
+        return values[state];
+    }
+
+    /**
+     * Gets the action the policy chose in a state.
+     *
+     * @param state index of the state in the model.
+     * @return the action of the chosen action row (an Action ordinal for grid worlds), -1 if the state has none.
+     */
+    public int getBestAction(int state) {
+        return policy[state] < 0 ? -1 : model.getActionId(policy[state]);
+    }
+
+    /**
+     * Prints the complexity (amount of Q-values calculated) to the console.
+     */
+    public void printComplexity() {
+        System.out.println(complexity);
+    }
+
+    /**
+     * Prints the amount of improvement steps and evaluation sweeps made to the console.
+     */
+    public void printConvergence() {
+        System.out.println("improvements: " + improvements + ", evaluation sweeps: " + totalEvaluationSweeps);
+    }
+
+    /**
+     * Getter for the amount of improvement steps made by the last solve.
+     *
+     * @return integer of improvement steps.
+     */
+    public int getImprovements() {
+        return improvements;
+    }
+
+    /**
+     * Getter for the total amount of evaluation sweeps made by the last solve.
+     *
+     * @return integer of evaluation sweeps.
+     */
+    public int getEvaluationSweeps() {
+        return totalEvaluationSweeps;
+    }
+
+    /**
+     * Setter for the amount of evaluation sweeps per improvement step (modified policy iteration).
+     *
+     * @param evaluationSweeps new integer of sweeps, 0 evaluates every policy until its values converge.
+     */
+    public void setEvaluationSweeps(int evaluationSweeps) {
+        this.evaluationSweeps = Math.max(0, evaluationSweeps);
+    }
+
+    /**
+     * Setter for the maximum amount of improvement steps.
+     *
+     * @param iterations new integer of maximum improvement steps.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Setter for the epsilon below which the largest change of a value counts as converged.
+     *
+     * @param epsilon new double of epsilon.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Setter for the discount factor.
+     *
+     * @param discount new double of discount.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Getter for the discount factor.
+     *
+     * @return double of discount.
+     */
+    @Override
+    public double getDiscount() {
+        return discount;
+    }
+}
@@ -0,0 +1,242 @@
+package mdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A solved policy saved to (or loaded from) a compact binary file, so it does not have to be solved again.
+ * Loading maps the file read only, the policy and values are read straight from the mapping without copying.
+ *
+ * The file layout (big endian):
+ * magic "MDPS" (int), version (int), width (int), height (int),
+ * the five probabilities of getProbs() (doubles), positive, negative and no reward (doubles), discount (double),
+ * then one byte per field (Field ordinal), padding up to a multiple of 4,
+ * one float value per state and one byte per state for the policy (Action ordinal, -1 for none).
+ * All per state data is row by row (index = y * width + x).
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class PolicySnapshot implements SolvedPolicy, Closeable {
+
+    public static final int MAGIC = 0x4D445053;
+    public static final int VERSION = 1;
+    private static final int HEADER = 88;
+    private static final Field[] FIELDS = Field.values();
+    private static final Action[] ACTIONS = Action.values();
+
+    private MappedArray data;
+    private int width;
+    private int height;
+    private long valuesStart;
+    private long policyStart;
+
+    /**
+     * Wraps a mapped snapshot file.
+     */
+    private PolicySnapshot(MappedArray data, int width, int height) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.valuesStart = getValuesStart(width, height);
+        this.policyStart = valuesStart + (long) width * height * 4;
+    }
+
+    /**
+     * Saves the landscape and settings of the mdp together with the solved policy and values.
+     *
+     * @param file the file to write, overwritten if it exists.
+     * @param mdp the markov decision problem the policy was solved for.
+     * @param solved the solved policy, e.g. a ValueIteration or PolicyIteration.
+     * @throws IOException if the file can not be written.
+     */
+    public static void save(Path file, MarkovDecisionProblem mdp, SolvedPolicy solved) throws IOException {
+        int width = mdp.getWidth();
+        int height = mdp.getHeight();
+        long states = (long) width * height;
+        long valuesStart = getValuesStart(width, height);
+        long policyStart = valuesStart + states * 4;
+        Files.deleteIfExists(file);
+        MappedArray data = new MappedArray(file, policyStart + states);
+        try {
+            data.putInt(0, MAGIC);
+            data.putInt(4, VERSION);
+            data.putInt(8, width);
+            data.putInt(12, height);
+            double[] probs = mdp.getProbs();
+            for (int i = 0; i < 5; i++) {
+                data.putDouble(16 + i * 8, probs[i]);
+            }
+            data.putDouble(56, mdp.getPosReward());
+            data.putDouble(64, mdp.getNegReward());
+            data.putDouble(72, mdp.getNoReward());
+            data.putDouble(80, solved.getDiscount());
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    long index = (long) y * width + x;
+                    Action action = solved.getAction(x, y);
+                    data.putByte(HEADER + index, (byte) mdp.getField(x, y).ordinal());
+                    data.putFloat(valuesStart + index * 4, (float) solved.getValue(x, y));
+                    data.putByte(policyStart + index, action == null ? -1 : (byte) action.ordinal());
+                }
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Loads a snapshot by mapping it read only. Close it when it is not needed anymore.
+     *
+     * @param file the file written by save().
+     * @return the loaded snapshot.
+     * @throws IOException if the file can not be read, is not a snapshot, has another version or is too short.
+     */
+    public static PolicySnapshot load(Path file) throws IOException {
+        if (Files.size(file) < HEADER) {
+            throw new IOException("not a policy snapshot: " + file);
+        }
+        MappedArray header = new MappedArray(file, HEADER, true);
+        int magic = header.getInt(0);
+        int version = header.getInt(4);
+        int width = header.getInt(8);
+        int height = header.getInt(12);
+        header.close();
+        if (magic != MAGIC) {
+            throw new IOException("not a policy snapshot: " + file);
+        }
+        if (version != VERSION) {
+            throw new IOException("unsupported policy snapshot version " + version + ": " + file);
+        }
+        long size = getValuesStart(width, height) + (long) width * height * 5;
+        if (width <= 0 || height <= 0 || Files.size(file) < size) {
+            throw new IOException("truncated policy snapshot: " + file);
+        }
+        return new PolicySnapshot(new MappedArray(file, size, true), width, height);
+    }
+
+    /**
+     * Getter for the position of the values, the fields are padded so the floats are aligned.
+     */
+    private static long getValuesStart(int width, int height) {
+        return (HEADER + (long) width * height + 3) & ~3L;
+    }
+
+    /**
+     * Gets the action according to the saved policy.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the most valuable action in the state.
+     */
+    @Override
+    public Action getAction(int xpos, int ypos) {
+        byte action = data.getByte(policyStart + (long) ypos * width + xpos);
+        return action < 0 ? null : ACTIONS[action];
+    }
+
+    /**
+     * Gets the saved value of a state.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    @Override
+    public double getValue(int xpos, int ypos) {
+        return data.getFloat(valuesStart + ((long) ypos * width + xpos) * 4);
+    }
+
+    /**
+     * Returns the saved field with the given x and y coordinates.
+     */
+    public Field getField(int xpos, int ypos) {
+        if (xpos >= 0 && xpos < width && ypos >= 0 && ypos < height) {
+            return FIELDS[data.getByte(HEADER + (long) ypos * width + xpos)];
+        }
+        return Field.OUTOFBOUNDS;
+    }
+
+    /**
+     * Copies the saved landscape, probabilities and rewards into the given mdp, which should have the same size.
+     *
+     * @param mdp the markov decision problem to restore.
+     */
+    public void restore(MarkovDecisionProblem mdp) {
+        double[] probs = getProbs();
+        mdp.setProbsStep(probs[0], probs[1] + probs[2], probs[3], probs[4]);
+        mdp.setPosReward(getPosReward());
+        mdp.setNegReward(getNegReward());
+        mdp.setNoReward(getNoReward());
+        for (int y = 0; y < Math.min(height, mdp.getHeight()); y++) {
+            for (int x = 0; x < Math.min(width, mdp.getWidth()); x++) {
+                mdp.setField(x, y, getField(x, y));
+            }
+        }
+    }
+
+    /**
+     * Get the saved array of action execution probabilities, in the format of MarkovDecisionProblem.getProbs().
+     */
+    public double[] getProbs() {
+        double[] probs = new double[5];
+        for (int i = 0; i < 5; i++) {
+            probs[i] = data.getDouble(16 + i * 8);
+        }
+        return probs;
+    }
+
+    /**
+     * Getter for the saved positive reward.
+     */
+    public double getPosReward() {
+        return data.getDouble(56);
+    }
+
+    /**
+     * Getter for the saved negative reward.
+     */
+    public double getNegReward() {
+        return data.getDouble(64);
+    }
+
+    /**
+     * Getter for the saved no reward.
+     */
+    public double getNoReward() {
+        return data.getDouble(72);
+    }
+
+    /**
+     * Getter for the discount factor the values were calculated with.
+     */
+    @Override
+    public double getDiscount() {
+        return data.getDouble(80);
+    }
+
+    /**
+     * Returns the width of the landscape
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the landscape
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+}
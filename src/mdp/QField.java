@@ -4,20 +4,35 @@ package mdp;
  * A class representing a state and all possible actions in that state pair.
  * Contains the update of the value formula.
  *
+ * A QField is a view on the four values of one state in a flat array, either its own
+ * or those of a state in a QTable (see QLearning.getQField), in which case changes go straight to the table.
+ *
  * @author David Leeftink and Mantas Makelis
  */
 public class QField {
 
-    private Action[] actions;
+    private final static Action[] ACTIONS = Action.values();
+
     private double[] values;
+    private int offset;
 
     /**
      * Constructor of the state-actions representation.
      */
     public QField() {
-        this.actions = new Action[]{Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
-        this.values = new double[actions.length];
+        this.values = new double[QTable.ACTIONS];
+        this.offset = 0;
+    }
 
+    /**
+     * Constructor of a view on a state of a Q-table.
+     *
+     * @param table the table holding the values.
+     * @param state index of the state in the table.
+     */
+    public QField(QTable table, int state) {
+        this.values = table.getValues();
+        this.offset = state * QTable.ACTIONS;
     }
 
     /**
@@ -26,8 +41,13 @@ public class QField {
      * @return most valuable action (policy).
      */
     public Action getHighestAction() {
-        int index = Utilities.getHighestIndex(values);
-        return actions[index];
+        int best = 0;
+        for (int a = 1; a < QTable.ACTIONS; a++) {
+            if (values[offset + best] < values[offset + a]) {
+                best = a;
+            }
+        }
+        return ACTIONS[best];
     }
 
     /**
@@ -38,7 +58,7 @@ public class QField {
      * @param next the resulting state after performed action (current state).
      */
     public void updateValue(Action action, double reward, QField next) {
-        int index = getActionIndex(action);
+        int index = offset + getActionIndex(action);
         double nextHighestAction = next.getValue(next.getHighestAction());
         values[index] = values[index] + QLearning.LEARN_RATE * (reward + QLearning.DISCOUNT * nextHighestAction - values[index]);
     }
@@ -50,18 +70,7 @@ public class QField {
      * @return integer index.
      */
     private int getActionIndex(Action action) {
-        switch (action) {
-            case UP:
-                return 0;
-            case DOWN:
-                return 1;
-            case LEFT:
-                return 2;
-            case RIGHT:
-                return 3;
-            default:
-                return 0;
-        }
+        return action == Action.NOTHING ? 0 : action.ordinal();
     }
 
     /**
@@ -71,16 +80,6 @@ public class QField {
      * @return double of the value.
      */
     public double getValue(Action action) {
-        if (action == Action.UP) {
-            return values[0];
-        }
-        if (action == Action.DOWN) {
-            return values[1];
-        }
-        if (action == Action.LEFT) {
-            return values[2];
-        } else {
-            return values[3];
-        }
+        return values[offset + getActionIndex(action)];
     }
 }
@@ -1,25 +1,76 @@
 package mdp;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The class which represents the Q-Learning algorithm containing all parameters and main algorithm part.
  *
+ * Constructed with only an mdp, the agent always takes its greedy action and exploration comes from
+ * making the mdp itself more random (changeProbabilities(EPSILON)), as it always did.
+ * Constructed with an Exploration, the mdp is left as it is and the exploration chooses the actions instead.
+ * The learning rate and discount default to LEARN_RATE and DISCOUNT and can be changed with the setters.
+ *
  * @author David Leeftink and Mantas Makelis
  */
-public class QLearning {
+public class QLearning implements Policy {
 
     public final static double LEARN_RATE = 0.2;
     public final static double EPSILON = 0.04;
     public final static double DISCOUNT = 1;
 
-    private int totalActionsMade;
+    private long totalActionsMade;
     private double cumulativeReward;
-    private ArrayList<Double> timedCumulativeReward;
     private int learningIterations;
+    private MetricsSink metrics;
+    private long episodeLength;
+    private double episodeReturn;
+    private double perturbation;    // the epsilon the mdp was made more random with, 0 if it was not changed
+
+    private final static Action[] ACTIONS = Action.values();
 
     private MarkovDecisionProblem mdp;
-    private QField[][] qFields;
+    private QTable table;
+
+    private Exploration exploration;
+    private double learnRate = LEARN_RATE;
+    private double discount = DISCOUNT;
+    private double learnRateDecay;
+    private int[] visits;    // how often each state-action was updated, indexed like the Q-table
+    private long steps;
+    private SplittableRandom rand = new SplittableRandom();
+    private ReplayBuffer replay;
+    private int replayRatio;
+    private TabularModel model;
+    private int planningUpdates;
+    private boolean prioritizedPlanning;
+    private double planningThreshold = 1e-4;
+    private StatePriorityQueue planningQueue;    // state-actions (state * 4 + action) by the change of their value
+
+    private UpdateRule rule = UpdateRule.Q_LEARNING;
+    private int nSteps = 1;
+    private double lambda;
+    private double traceCutoff = 1e-3;
+    private int expectedState = -1;    // the state the agent should be in at the next step, -1 after an end state
+    private int pendingAction = -1;    // the action already chosen for expectedState, -1 for none
+    private double[] probabilities = new double[QTable.ACTIONS];
+    private int[] pathStateActions;    // ring of the last nSteps state-actions, for n-step returns
+    private double[] pathRewards;
+    private int pathStart;
+    private int pathSize;
+    private int[] traceStateActions;    // the state-actions with an eligibility trace, in no particular order
+    private double[] traces;
+    private int[] tracePositions;       // per state-action, its position in traceStateActions, -1 for none
+    private int traceCount;
 
     /**
      * The constructor of the Q-Learning algorithm. It initialised the starting values.
@@ -27,49 +78,720 @@ public class QLearning {
      * @param mdp the initialised markov decision problem class which contains grid world.
      */
     public QLearning(MarkovDecisionProblem mdp) {
-        this.mdp = mdp;
+        this(mdp, null);
         mdp.changeProbabilities(EPSILON);
-        this.qFields = initializeQ();
-        this.learningIterations = 1;
-        timedCumulativeReward = new ArrayList<>();
+        this.perturbation = EPSILON;
     }
 
     /**
-     * Initialises starting state-actions pairs representation.
+     * The constructor of the Q-Learning algorithm with an exploration strategy. The mdp is not changed.
      *
-     * @return the two-dimensional array of state-actions representations.
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param exploration the way actions are chosen while learning, null for always the greedy action.
      */
-    private QField[][] initializeQ() {
-        QField[][] qFields = new QField[mdp.getWidth()][mdp.getHeight()];
-        for (int i = 0; i < mdp.getWidth(); i++) {
-            for (int j = 0; j < mdp.getHeight(); j++) {
-                qFields[i][j] = new QField();
-            }
-        }
-        return qFields;
+    public QLearning(MarkovDecisionProblem mdp, Exploration exploration) {
+        this.mdp = mdp;
+        this.exploration = exploration;
+        this.table = new QTable(mdp.getWidth(), mdp.getHeight());
+        this.visits = new int[table.getValues().length];
+        this.pathStateActions = new int[1];
+        this.pathRewards = new double[1];
+        this.learningIterations = 1;
     }
 
     /**
-     * The Q-Leaning algorithm.
+     * The Q-Leaning algorithm, until the cumulative reward reaches 100000.
+     * On maps where that is never reached this does not end, use learn(StoppingCriterion) to bound the run.
+     * Without a metrics sink set, the progress is written to cumulative_rewards-rewards.csv and
+     * cumulative_rewards-episodes.csv in the working directory.
      */
     public void learn() {
+        boolean ownMetrics = metrics == null;
+        if (ownMetrics) {
+            try {
+                metrics = new MetricsSink(Paths.get("."), "cumulative_rewards", MetricsSink.Format.CSV);
+            } catch (IOException e) {
+                System.err.println("ERROR: QLearning: learn: could not create the metrics files: " + e.getMessage());
+            }
+        }
         while (cumulativeReward < 100000) {
             do {
-                QField current = qFields[mdp.getStateXPosition()][mdp.getStateYPostion()];
-                Action action = current.getHighestAction();
-                double reward = mdp.performAction(action);
-                QField next = qFields[mdp.getStateXPosition()][mdp.getStateYPostion()];
-                current.updateValue(action, reward, next);
-                cumulativeReward += reward;
-                totalActionsMade++;
-                if (totalActionsMade % 100 == 0) {
-                    timedCumulativeReward.add(cumulativeReward);
-                }
+                record(step());
             } while (!mdp.isTerminated());
-            mdp.restart();
-            mdp.setLearningIterations(learningIterations++);
-            mdp.setCumulativeReward(cumulativeReward);
+            endEpisode();
+        }
+        if (ownMetrics && metrics != null) {
+            try {
+                metrics.close();
+            } catch (IOException e) {
+                System.err.println("ERROR: QLearning: learn: could not write the metrics files: " + e.getMessage());
+            }
+            metrics = null;
+        }
+    }
+
+    /**
+     * The Q-Learning algorithm, until the given criterion is met. Continues where the last call stopped, like learn(long).
+     *
+     * @param criterion the condition that ends the run, see StoppingCriteria.
+     */
+    public void learn(StoppingCriterion criterion) {
+        criterion.start(this);
+        // checked before every step, so a criterion that is already met takes no step
+        while (!criterion.isMet(this)) {
+            record(step());
+            if (mdp.isTerminated()) {
+                endEpisode();
+            }
+        }
+    }
+
+    /**
+     * Adds the reward of an action to the totals, and writes the cumulative reward to the metrics every 100 actions.
+     */
+    private void record(double reward) {
+        cumulativeReward += reward;
+        totalActionsMade++;
+        episodeLength++;
+        episodeReturn += reward;
+        if (metrics != null && totalActionsMade % 100 == 0) {
+            try {
+                metrics.recordReward(totalActionsMade, cumulativeReward);
+            } catch (IOException e) {
+                metricsFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Restarts the mdp after an end state was reached and writes the episode to the metrics.
+     */
+    private void endEpisode() {
+        if (metrics != null) {
+            try {
+                metrics.recordEpisode(learningIterations, episodeLength, episodeReturn, getExplorationRate());
+            } catch (IOException e) {
+                metricsFailed(e);
+            }
+        }
+        episodeLength = 0;
+        episodeReturn = 0;
+        mdp.restart();
+        mdp.setLearningIterations(learningIterations++);
+        mdp.setCumulativeReward(cumulativeReward);
+    }
+
+    /**
+     * Reports that the metrics could not be written and stops writing them.
+     */
+    private void metricsFailed(IOException e) {
+        System.err.println("ERROR: QLearning: could not write the metrics, they are no longer recorded: " + e.getMessage());
+        try {
+            metrics.close();
+        } catch (IOException ignored) {
+            // already reported
+        }
+        metrics = null;
+    }
+
+    /**
+     * Getter for the current exploration rate: that of the exploration strategy,
+     * or the epsilon the mdp was made more random with when there is none.
+     */
+    public double getExplorationRate() {
+        return exploration == null ? perturbation : exploration.getExplorationRate(steps);
+    }
+
+    /**
+     * Performs the chosen action in the current state of the mdp and updates its Q-value.
+     * The Q-values of end states are never updated, so they stay 0.
+     *
+     * @return the reward received.
+     */
+    private double step() {
+        int current = table.getIndex(mdp.getStateXPosition(), mdp.getStateYPostion());
+        if (current != expectedState) {
+            // the mdp was moved since the last step, so the path and traces of that step do not lead here
+            pendingAction = -1;
+            forget();
+        }
+        int action = pendingAction >= 0 ? pendingAction : chooseAction(current, steps, rand);
+        steps++;
+        double reward = mdp.performAction(ACTIONS[action]);
+        int next = table.getIndex(mdp.getStateXPosition(), mdp.getStateYPostion());
+        if (rule == UpdateRule.Q_LEARNING && nSteps == 1 && lambda == 0) {
+            update(current, action, reward, next);
+            expectedState = next;
+        } else {
+            learnFrom(current, action, reward, next, mdp.isTerminated());
+        }
+        if (replay != null) {
+            replay.add(current, action, reward, next);
+            replay(rand);
+        }
+        if (model != null) {
+            model.observe(current, action, reward, next);
+            plan(current * QTable.ACTIONS + action);
+        }
+        return reward;
+    }
+
+    /**
+     * The update of the SARSA, Expected SARSA, n-step and eligibility trace learners. For SARSA and the traces
+     * the action of the next state is chosen here already, and taken in the next step.
+     *
+     * @param state index of the state the action was taken in.
+     * @param action ordinal of the action.
+     * @param reward the reward received.
+     * @param next index of the resulting state.
+     * @param terminal true if next is an end state, which ends the episode.
+     */
+    private void learnFrom(int state, int action, double reward, int next, boolean terminal) {
+        visits[state * QTable.ACTIONS + action]++;
+        pendingAction = -1;
+        expectedState = -1;
+        double bootstrap = 0;
+        boolean greedy = true;
+        if (!terminal) {
+            expectedState = next;
+            if (rule == UpdateRule.SARSA || lambda > 0) {
+                pendingAction = chooseAction(next, steps, rand);
+                greedy = table.getValue(next, pendingAction) == table.getHighestValue(next);
+            }
+            bootstrap = bootstrap(next, pendingAction);
+        }
+        if (lambda > 0) {
+            learnTraces(state * QTable.ACTIONS + action, reward, bootstrap);
+            // Watkins's Q(lambda): after an exploring action the greedy policy is no longer followed
+            if (terminal || (rule == UpdateRule.Q_LEARNING && !greedy)) {
+                clearTraces();
+            }
+        } else {
+            learnNStep(state * QTable.ACTIONS + action, reward, bootstrap, terminal);
+        }
+    }
+
+    /**
+     * The value of the next state to bootstrap from, according to the update rule.
+     *
+     * @param next index of the next state.
+     * @param nextAction ordinal of the action chosen for the next state, -1 if none was chosen.
+     * @return double of the value.
+     */
+    private double bootstrap(int next, int nextAction) {
+        switch (rule) {
+            case SARSA:
+                return table.getValue(next, nextAction);
+            case EXPECTED_SARSA:
+                if (exploration == null) {
+                    return table.getHighestValue(next);
+                }
+                exploration.getProbabilities(table, visits, next, steps, probabilities);
+                double expected = 0;
+                for (int a = 0; a < QTable.ACTIONS; a++) {
+                    expected += probabilities[a] * table.getValue(next, a);
+                }
+                return expected;
+            default:
+                return table.getHighestValue(next);
+        }
+    }
+
+    /**
+     * The n-step update: once nSteps actions are on the path, the oldest state-action is updated towards
+     * its discounted rewards plus the discounted bootstrap value. At the end of an episode the whole path is updated
+     * with the rewards that are left.
+     */
+    private void learnNStep(int stateAction, double reward, double bootstrap, boolean terminal) {
+        int slot = (pathStart + pathSize) % nSteps;
+        pathStateActions[slot] = stateAction;
+        pathRewards[slot] = reward;
+        pathSize++;
+        if (pathSize == nSteps) {
+            updateOldest(bootstrap);
+        }
+        if (terminal) {
+            while (pathSize > 0) {
+                updateOldest(0);
+            }
+        }
+    }
+
+    /**
+     * Updates the oldest state-action of the path with the return of the path and removes it from the path.
+     */
+    private void updateOldest(double bootstrap) {
+        double target = bootstrap;
+        for (int k = pathSize - 1; k >= 0; k--) {
+            target = pathRewards[(pathStart + k) % nSteps] + discount * target;
+        }
+        int stateAction = pathStateActions[pathStart];
+        double[] values = table.getValues();
+        values[stateAction] += getLearnRate(stateAction) * (target - values[stateAction]);
+        pathStart = (pathStart + 1) % nSteps;
+        pathSize--;
+    }
+
+    /**
+     * The eligibility trace update, with replacing traces. Only the state-actions with a trace are touched;
+     * a trace that decays below the cutoff is dropped.
+     */
+    private void learnTraces(int stateAction, double reward, double bootstrap) {
+        double[] values = table.getValues();
+        double delta = reward + discount * bootstrap - values[stateAction];
+        if (tracePositions[stateAction] < 0) {
+            tracePositions[stateAction] = traceCount;
+            traceStateActions[traceCount++] = stateAction;
+        }
+        traces[tracePositions[stateAction]] = 1;
+        double decay = discount * lambda;
+        int i = 0;
+        while (i < traceCount) {
+            int traced = traceStateActions[i];
+            values[traced] += getLearnRate(traced) * delta * traces[i];
+            traces[i] *= decay;
+            if (traces[i] < traceCutoff) {
+                // move the last trace into this position
+                tracePositions[traced] = -1;
+                traceCount--;
+                if (i < traceCount) {
+                    traceStateActions[i] = traceStateActions[traceCount];
+                    traces[i] = traces[traceCount];
+                    tracePositions[traceStateActions[i]] = i;
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Removes all eligibility traces.
+     */
+    private void clearTraces() {
+        for (int i = 0; i < traceCount; i++) {
+            tracePositions[traceStateActions[i]] = -1;
+        }
+        traceCount = 0;
+    }
+
+    /**
+     * Forgets the n-step path and the eligibility traces, without updating anything.
+     */
+    private void forget() {
+        pathSize = 0;
+        if (traceCount > 0) {
+            clearTraces();
+        }
+    }
+
+    /**
+     * The learning rate of a state-action. Without a learning rate decay that is just the learning rate,
+     * otherwise learnRate / n^decay where n is the amount of times the state-action was taken.
+     */
+    private double getLearnRate(int stateAction) {
+        if (learnRateDecay == 0) {
+            return learnRate;
+        }
+        return learnRate / Math.pow(Math.max(1, visits[stateAction]), learnRateDecay);
+    }
+
+    /**
+     * Dyna-Q planning: sets planningUpdates Q-values to their expected value under the learned model.
+     * Without prioritized sweeping the state-actions are drawn uniformly from those taken before.
+     * With prioritized sweeping the state-actions whose value would change most go first, starting with the one
+     * just taken, and the predecessors of every updated state are queued when their change exceeds the threshold.
+     *
+     * @param taken the state-action (state * 4 + action) just taken.
+     */
+    private void plan(int taken) {
+        double[] values = table.getValues();
+        if (!prioritizedPlanning) {
+            for (int p = 0; p < planningUpdates; p++) {
+                int stateAction = model.getObserved(rand.nextInt(model.getObservedCount()));
+                values[stateAction] = model.target(table, stateAction, discount);
+            }
+            return;
+        }
+        queuePlanning(taken);
+        for (int p = 0; p < planningUpdates && !planningQueue.isEmpty(); p++) {
+            int stateAction = planningQueue.poll();
+            values[stateAction] = model.target(table, stateAction, discount);
+            int state = stateAction / QTable.ACTIONS;
+            for (int slot = model.getFirstPredecessor(state); slot >= 0; slot = model.getNextPredecessor(slot)) {
+                queuePlanning(model.getStateAction(slot));
+            }
+        }
+    }
+
+    /**
+     * Queues a state-action for prioritized sweeping if its value would change more than the threshold.
+     */
+    private void queuePlanning(int stateAction) {
+        double priority = Math.abs(model.target(table, stateAction, discount) - table.getValues()[stateAction]);
+        if (priority > planningThreshold) {
+            planningQueue.raise(stateAction, priority);
+        }
+    }
+
+    /**
+     * Updates the Q-values of replayRatio transitions drawn from the replay buffer,
+     * with the learning rate their state-actions have now, and gives them their new priorities.
+     *
+     * @param random the random number generator to draw with.
+     */
+    private void replay(SplittableRandom random) {
+        for (int r = 0; r < replayRatio; r++) {
+            int slot = replay.sample(random);
+            int state = replay.getState(slot);
+            int action = replay.getAction(slot);
+            double rate = getLearnRate(state * QTable.ACTIONS + action);
+            double error = table.update(state, action, replay.getReward(slot), replay.getNext(slot), rate, discount);
+            replay.setPriority(slot, error);
+        }
+    }
+
+    /**
+     * Chooses the action to take in a state: the greedy one, or the one of the exploration strategy.
+     *
+     * @param state index of the state.
+     * @param step the amount of actions made so far, for decaying explorations.
+     * @param random the random number generator of the calling thread.
+     * @return ordinal of the action.
+     */
+    private int chooseAction(int state, long step, SplittableRandom random) {
+        if (exploration == null) {
+            return table.getHighestAction(state);
+        }
+        return exploration.chooseAction(table, visits, state, step, random);
+    }
+
+    /**
+     * Counts the visit of a state-action and updates its Q-value with the learning rate of the state-action.
+     */
+    private void update(int state, int action, double reward, int next) {
+        int index = state * QTable.ACTIONS + action;
+        visits[index]++;
+        table.update(state, action, reward, next, getLearnRate(index), discount);
+    }
+
+    /**
+     * The Q-Learning algorithm for a fixed amount of actions, continuing where the last call stopped.
+     * Episodes that end are restarted, an unfinished episode is continued by the next call.
+     * Only writes to the metrics sink if one is set, so without one it can be used for measuring.
+     *
+     * @param actions the amount of actions to learn from.
+     */
+    public void learn(long actions) {
+        for (long i = 0; i < actions; i++) {
+            record(step());
+            if (mdp.isTerminated()) {
+                endEpisode();
+            }
+        }
+    }
+
+    /**
+     * Hogwild style parallel Q-Learning. Every worker thread runs its own agent in its own BatchEnvironment,
+     * and all workers update the one shared Q-table of this class without any locking.
+     * An update now and then getting lost to another thread is harmless for Q-Learning, and much cheaper than locking.
+     *
+     * Every worker gets its own seed, derived from the given one, so the random outcomes of each worker can be replayed;
+     * the interleaving of the threads (and so the exact Q-values) can still differ between runs.
+     * The workers always use one-step Q-Learning, do not use the replay buffer or the planning
+     * and do not write to the metrics sink.
+     *
+     * @param workers the amount of worker threads.
+     * @param actions the amount of actions every worker learns from.
+     * @param seed the seed from which the seeds of the workers are derived.
+     */
+    public void learnParallel(int workers, long actions, long seed) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Callable<double[]>> tasks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                BatchEnvironment env = new BatchEnvironment(mdp, 1, seed + w * 0x9E3779B97F4A7C15L);
+                SplittableRandom random = new SplittableRandom(~(seed + w * 0x9E3779B97F4A7C15L));
+                tasks.add(() -> learnWorker(env, random, actions));
+            }
+            for (Future<double[]> result : pool.invokeAll(tasks)) {
+                double[] totals = result.get();
+                cumulativeReward += totals[0];
+                learningIterations += (int) totals[1];
+                // every worker made its own actions, so both counters go up by all of them
+                totalActionsMade += actions;
+                steps += actions;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        mdp.setLearningIterations(learningIterations);
+        mdp.setCumulativeReward(cumulativeReward);
+    }
+
+    /**
+     * The Q-Learning loop of a single worker of learnParallel.
+     *
+     * @param env the environment of this worker, with one agent.
+     * @param random the random number generator of this worker, for the exploration.
+     * @param actions the amount of actions to learn from.
+     * @return the total reward and the amount of finished episodes.
+     */
+    private double[] learnWorker(BatchEnvironment env, SplittableRandom random, long actions) {
+        byte[] chosen = new byte[1];
+        double reward = 0;
+        long episodes = 0;
+        int[] states = env.getStates();
+        for (long i = 0; i < actions; i++) {
+            int current = states[0];
+            int action = chooseAction(current, steps + i, random);
+            chosen[0] = (byte) action;
+            env.step(chosen);
+            // the agent is back at its start after an end state, whose Q-values are 0
+            int next = env.getDone()[0] ? -1 : states[0];
+            update(current, action, env.getRewards()[0], next);
+            reward += env.getRewards()[0];
+            if (env.getDone()[0]) {
+                episodes++;
+            }
         }
-        Utilities.dumpQInfo(timedCumulativeReward);
+        return new double[]{reward, episodes};
+    }
+
+    /**
+     * Gets the greedy action according to the learned Q-values.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the most valuable action in the state.
+     */
+    @Override
+    public Action getAction(int xpos, int ypos) {
+        return ACTIONS[table.getHighestAction(table.getIndex(xpos, ypos))];
+    }
+
+    /**
+     * Getter for a view on the Q-values of a state. Changes through the view go straight to the Q-table.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the state-actions representation of the state.
+     */
+    public QField getQField(int xpos, int ypos) {
+        return new QField(table, table.getIndex(xpos, ypos));
+    }
+
+    /**
+     * Getter for the Q-table.
+     *
+     * @return the table with all Q-values.
+     */
+    public QTable getTable() {
+        return table;
+    }
+
+    /**
+     * Setter for the way actions are chosen while learning.
+     *
+     * @param exploration the exploration strategy, null for always the greedy action.
+     */
+    public void setExploration(Exploration exploration) {
+        this.exploration = exploration;
+    }
+
+    /**
+     * Setter for the learning rate, LEARN_RATE by default.
+     *
+     * @param learnRate the (initial) learning rate, between 0 and 1.
+     */
+    public void setLearnRate(double learnRate) {
+        this.learnRate = learnRate;
+    }
+
+    /**
+     * Setter for how fast the learning rate of a state-action drops with its visits: the learning rate
+     * of the n-th update is learnRate / n^decay. 0 (the default) keeps it constant, a decay between 0.5 and 1
+     * lets the Q-values settle while rarely visited state-actions still learn fast.
+     *
+     * @param learnRateDecay the exponent of the decay.
+     */
+    public void setLearnRateDecay(double learnRateDecay) {
+        this.learnRateDecay = learnRateDecay;
+    }
+
+    /**
+     * Setter for the discount factor, DISCOUNT by default.
+     *
+     * @param discount the discount factor, between 0 and 1.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Getter for the discount factor.
+     */
+    public double getDiscount() {
+        return discount;
+    }
+
+    /**
+     * Turns experience replay on: every action is added to the buffer, and after every action
+     * the given amount of transitions drawn from the buffer are learned from again.
+     *
+     * @param buffer the buffer to keep the transitions in, null to turn replay off.
+     * @param ratio the amount of replayed transitions per action.
+     */
+    public void setReplay(ReplayBuffer buffer, int ratio) {
+        this.replay = buffer;
+        this.replayRatio = ratio;
+    }
+
+    /**
+     * Turns Dyna-Q planning on: every action is added to a model of the mdp learned from the actions,
+     * and after every action the given amount of Q-values are set to their expected value under that model.
+     * Costs more computation per action, but needs far fewer actions to find a good policy.
+     *
+     * @param updates the amount of planning updates per action, 0 to turn planning off.
+     * @param prioritized true for prioritized sweeping, false for updating state-actions drawn uniformly.
+     */
+    public void setPlanning(int updates, boolean prioritized) {
+        this.planningUpdates = updates;
+        this.prioritizedPlanning = prioritized;
+        if (updates == 0) {
+            this.model = null;
+            this.planningQueue = null;
+        } else {
+            if (model == null) {
+                this.model = new TabularModel(table.getStates());
+            }
+            if (prioritized && planningQueue == null) {
+                this.planningQueue = new StatePriorityQueue(table.getStates() * QTable.ACTIONS);
+            }
+        }
+    }
+
+    /**
+     * Setter for the smallest change of a Q-value for which prioritized sweeping queues the state-action, 1e-4 by default.
+     */
+    public void setPlanningThreshold(double threshold) {
+        this.planningThreshold = threshold;
+    }
+
+    /**
+     * Getter for the model learned for planning, null when planning is off.
+     */
+    public TabularModel getModel() {
+        return model;
+    }
+
+    /**
+     * Setter for the sink the learning progress is written to while learning. The sink is not closed by this class.
+     *
+     * @param metrics the sink, null for not writing the progress.
+     */
+    public void setMetrics(MetricsSink metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Setter for the update rule, Q_LEARNING by default.
+     *
+     * @param rule the value of the next state to bootstrap from.
+     */
+    public void setUpdateRule(UpdateRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Setter for the amount of rewards in a return before bootstrapping (n-step learning), 1 by default.
+     * Not used when lambda is above 0.
+     *
+     * @param n the amount of steps, at least 1.
+     */
+    public void setNSteps(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The amount of steps should be at least 1, but is " + n);
+        }
+        this.nSteps = n;
+        this.pathStateActions = new int[n];
+        this.pathRewards = new double[n];
+        this.pathStart = 0;
+        this.pathSize = 0;
+    }
+
+    /**
+     * Setter for lambda of the eligibility traces, 0 (no traces) by default.
+     * With the Q_LEARNING rule this is Watkins's Q(lambda), with the SARSA rule SARSA(lambda).
+     *
+     * @param lambda the decay of the traces, between 0 and 1.
+     */
+    public void setLambda(double lambda) {
+        this.lambda = lambda;
+        if (lambda > 0 && traces == null) {
+            int stateActions = table.getValues().length;
+            this.traceStateActions = new int[stateActions];
+            this.traces = new double[stateActions];
+            this.tracePositions = new int[stateActions];
+            Arrays.fill(tracePositions, -1);
+        }
+    }
+
+    /**
+     * Setter for the smallest eligibility trace that is kept, 1e-3 by default.
+     * A higher cutoff keeps fewer traces, so the updates are cheaper but reach less far back.
+     */
+    public void setTraceCutoff(double cutoff) {
+        this.traceCutoff = cutoff;
+    }
+
+    /**
+     * Setter for the seed of the random numbers of the exploration, the replay and the planning.
+     *
+     * @param seed the seed, the same seed gives the same choices for the same Q-values.
+     */
+    public void setSeed(long seed) {
+        this.rand = new SplittableRandom(seed);
+    }
+
+    /**
+     * Getter for how often each state-action was updated, indexed like the values of the Q-table.
+     */
+    public int[] getVisits() {
+        return visits;
+    }
+
+    /**
+     * Getter for the total amount of actions learned from, as a long.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Getter for the amount of finished episodes.
+     */
+    public long getEpisodes() {
+        return learningIterations - 1;
+    }
+
+    /**
+     * Getter for the cumulative reward of all actions learned from.
+     */
+    public double getCumulativeReward() {
+        return cumulativeReward;
+    }
+
+    /**
+     * Getter for the total amount of actions learned from.
+     *
+     * @return the amount of actions.
+     */
+    public long getTotalActionsMade() {
+        return totalActionsMade;
     }
 }
@@ -0,0 +1,141 @@
+package mdp;
+
+/**
+ * All Q-values of a grid world in one flat array.
+ * The value of action a (UP, DOWN, LEFT or RIGHT, by ordinal) in state s (index = y * width + x)
+ * is at index s * 4 + a, so a lookup or update is plain index arithmetic.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class QTable {
+
+    public final static int ACTIONS = 4;
+
+    private int width;
+    private double[] values;
+
+    /**
+     * Constructor of a table with all Q-values 0.
+     *
+     * @param width the width of the grid world.
+     * @param height the height of the grid world.
+     */
+    public QTable(int width, int height) {
+        this.width = width;
+        this.values = new double[width * height * ACTIONS];
+    }
+
+    /**
+     * Getter for the index of a state.
+     *
+     * @param x X coordinate of the state in the grid world.
+     * @param y Y coordinate of the state in the grid world.
+     * @return integer index of the state.
+     */
+    public int getIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Getter for the x-position of a state.
+     */
+    public int getX(int state) {
+        return state % width;
+    }
+
+    /**
+     * Getter for the y-position of a state.
+     */
+    public int getY(int state) {
+        return state / width;
+    }
+
+    /**
+     * Getter for a Q-value.
+     *
+     * @param state index of the state.
+     * @param action ordinal of the action.
+     * @return double of the value.
+     */
+    public double getValue(int state, int action) {
+        return values[state * ACTIONS + action];
+    }
+
+    /**
+     * Setter for a Q-value.
+     *
+     * @param state index of the state.
+     * @param action ordinal of the action.
+     * @param value new double of the value.
+     */
+    public void setValue(int state, int action, double value) {
+        values[state * ACTIONS + action] = value;
+    }
+
+    /**
+     * Finder for the highest valued action in a state. On a tie the first action wins.
+     *
+     * @param state index of the state.
+     * @return ordinal of the most valuable action (policy).
+     */
+    public int getHighestAction(int state) {
+        int offset = state * ACTIONS;
+        int best = 0;
+        double max = values[offset];
+        for (int a = 1; a < ACTIONS; a++) {
+            if (max < values[offset + a]) {
+                max = values[offset + a];
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finder for the highest Q-value in a state.
+     *
+     * @param state index of the state.
+     * @return the highest value.
+     */
+    public double getHighestValue(int state) {
+        int offset = state * ACTIONS;
+        double max = values[offset];
+        for (int a = 1; a < ACTIONS; a++) {
+            max = Math.max(max, values[offset + a]);
+        }
+        return max;
+    }
+
+    /**
+     * The Q-Learning update of the value of the action that was performed in a state.
+     *
+     * @param state index of the state the action was taken in (previous state).
+     * @param action ordinal of the action taken.
+     * @param reward the reward received after taken action.
+     * @param next index of the resulting state (current state), -1 for an end state that is left right away.
+     * @param learnRate the learning rate.
+     * @param discount the discount factor.
+     * @return the TD error, the difference between the target and the old value.
+     */
+    public double update(int state, int action, double reward, int next, double learnRate, double discount) {
+        int index = state * ACTIONS + action;
+        double nextHighest = next < 0 ? 0 : getHighestValue(next);
+        double error = reward + discount * nextHighest - values[index];
+        values[index] = values[index] + learnRate * error;
+        return error;
+    }
+
+    /**
+     * Getter for the array with all values, indexed by state * 4 + action.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Getter for the amount of states.
+     */
+    public int getStates() {
+        return values.length / ACTIONS;
+    }
+}
@@ -0,0 +1,188 @@
+package mdp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A ring buffer of the last transitions (state, action, reward, next state) an agent made,
+ * so QLearning can learn from each of them more than once (experience replay).
+ * The transitions are kept in primitive arrays that are allocated once, adding or sampling makes no objects;
+ * when the buffer is full the oldest transition is overwritten.
+ *
+ * Sampling is uniform, or prioritized: proportional to (|TD error| + a small constant)^alpha, using a sum tree
+ * so a sample or a priority change takes log(capacity) steps. New transitions get the highest priority seen so far,
+ * so every transition is replayed at least about once.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class ReplayBuffer {
+
+    private final static double MIN_PRIORITY = 1e-6;
+
+    private int[] states;
+    private byte[] actions;
+    private double[] rewards;
+    private int[] nexts;
+    private int size;
+    private int position;
+
+    private boolean prioritized;
+    private double alpha = 0.6;
+    private double maxPriority = 1;
+    private double[] tree;    // sum tree, the priority of slot i is at tree[capacity + i]
+
+    /**
+     * Constructor of an empty buffer.
+     *
+     * @param capacity the amount of transitions kept.
+     * @param prioritized true for prioritized sampling, false for uniform sampling.
+     */
+    public ReplayBuffer(int capacity, boolean prioritized) {
+        this.states = new int[capacity];
+        this.actions = new byte[capacity];
+        this.rewards = new double[capacity];
+        this.nexts = new int[capacity];
+        this.prioritized = prioritized;
+        if (prioritized) {
+            this.tree = new double[2 * capacity];
+        }
+    }
+
+    /**
+     * Adds a transition, overwriting the oldest one when the buffer is full.
+     *
+     * @param state index of the state the action was taken in.
+     * @param action ordinal of the action.
+     * @param reward the reward received.
+     * @param next index of the resulting state, -1 for an end state that is left right away.
+     */
+    public void add(int state, int action, double reward, int next) {
+        states[position] = state;
+        actions[position] = (byte) action;
+        rewards[position] = reward;
+        nexts[position] = next;
+        if (prioritized) {
+            setTree(position, maxPriority);
+        }
+        position = (position + 1) % states.length;
+        size = Math.min(size + 1, states.length);
+    }
+
+    /**
+     * Draws a transition. The buffer should not be empty.
+     *
+     * @param rand the random number generator to use.
+     * @return the slot of the transition.
+     */
+    public int sample(SplittableRandom rand) {
+        if (!prioritized) {
+            return rand.nextInt(size);
+        }
+        int capacity = states.length;
+        double pick = rand.nextDouble() * tree[1];
+        int node = 1;
+        while (node < capacity) {
+            int left = 2 * node;
+            if (pick < tree[left] || tree[left + 1] == 0) {
+                node = left;
+            } else {
+                pick -= tree[left];
+                node = left + 1;
+            }
+        }
+        return Math.min(node - capacity, size - 1);
+    }
+
+    /**
+     * Sets the priority of a transition after it was replayed. Does nothing for uniform sampling.
+     *
+     * @param slot the slot of the transition.
+     * @param tdError the TD error of the transition in its last update.
+     */
+    public void setPriority(int slot, double tdError) {
+        if (prioritized) {
+            double priority = Math.pow(Math.abs(tdError) + MIN_PRIORITY, alpha);
+            maxPriority = Math.max(maxPriority, priority);
+            setTree(slot, priority);
+        }
+    }
+
+    /**
+     * Sets the priority of a slot in the sum tree and updates the sums above it.
+     */
+    private void setTree(int slot, double priority) {
+        int node = states.length + slot;
+        tree[node] = priority;
+        for (node /= 2; node >= 1; node /= 2) {
+            tree[node] = tree[2 * node] + tree[2 * node + 1];
+        }
+    }
+
+    /**
+     * Setter for alpha, how strongly the priorities follow the TD errors (0 is uniform, 1 is proportional). 0.6 by default.
+     */
+    public void setPriorityExponent(double alpha) {
+        this.alpha = alpha;
+    }
+
+    /**
+     * Getter for the state of a transition.
+     */
+    public int getState(int slot) {
+        return states[slot];
+    }
+
+    /**
+     * Getter for the action ordinal of a transition.
+     */
+    public int getAction(int slot) {
+        return actions[slot];
+    }
+
+    /**
+     * Getter for the reward of a transition.
+     */
+    public double getReward(int slot) {
+        return rewards[slot];
+    }
+
+    /**
+     * Getter for the next state of a transition, -1 for an end state.
+     */
+    public int getNext(int slot) {
+        return nexts[slot];
+    }
+
+    /**
+     * Getter for the amount of transitions in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the amount of transitions the buffer can keep.
+     */
+    public int getCapacity() {
+        return states.length;
+    }
+
+    /**
+     * Getter for whether the sampling is prioritized.
+     */
+    public boolean isPrioritized() {
+        return prioritized;
+    }
+
+    /**
+     * Removes all transitions.
+     */
+    public void clear() {
+        size = 0;
+        position = 0;
+        maxPriority = 1;
+        if (prioritized) {
+            Arrays.fill(tree, 0);
+        }
+    }
+}
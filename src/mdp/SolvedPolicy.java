@@ -0,0 +1,25 @@
+package mdp;
+
+/**
+ * A policy calculated by a planning algorithm, which also knows the value of every state.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public interface SolvedPolicy extends Policy {
+
+    /**
+     * Gets the calculated value of a state.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    double getValue(int xpos, int ypos);
+
+    /**
+     * Getter for the discount factor the values were calculated with.
+     *
+     * @return double of discount.
+     */
+    double getDiscount();
+}
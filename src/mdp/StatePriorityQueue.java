@@ -0,0 +1,155 @@
+package mdp;
+
+/**
+ * A priority queue of state indices, highest priority first.
+ * Every state is at most once in the queue, and its priority can be changed while it is queued.
+ * Backed by a binary heap of primitive arrays, so no objects are made while queueing.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class StatePriorityQueue {
+
+    private int[] heap;
+    private int[] position;    // position of each state in the heap, -1 if not queued
+    private double[] priority;
+    private int size;
+
+    /**
+     * Constructor of an empty queue.
+     *
+     * @param states the amount of states, the queued indices should be below this.
+     */
+    public StatePriorityQueue(int states) {
+        this.heap = new int[states];
+        this.position = new int[states];
+        this.priority = new double[states];
+        for (int s = 0; s < states; s++) {
+            position[s] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Queues the state with the given priority.
+     * If the state is queued already, it keeps the highest of its old and the new priority.
+     *
+     * @param state index of the state.
+     * @param value the priority of the state.
+     */
+    public void raise(int state, double value) {
+        int i = position[state];
+        if (i < 0) {
+            i = size++;
+            heap[i] = state;
+            position[state] = i;
+            priority[state] = value;
+        } else if (value <= priority[state]) {
+            return;
+        } else {
+            priority[state] = value;
+        }
+        siftUp(i);
+    }
+
+    /**
+     * Removes the state with the highest priority from the queue.
+     *
+     * @return index of the state, -1 if the queue is empty.
+     */
+    public int poll() {
+        if (size == 0) {
+            return -1;
+        }
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Getter for the highest priority in the queue.
+     *
+     * @return double of the priority, 0 if the queue is empty.
+     */
+    public double peekPriority() {
+        return size == 0 ? 0 : priority[heap[0]];
+    }
+
+    /**
+     * Getter for the priority a state had when it was last queued.
+     */
+    public double getPriority(int state) {
+        return priority[state];
+    }
+
+    /**
+     * Returns if the queue is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the amount of queued states.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the queue.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Moves the state at the given heap position up until its parent has a higher priority.
+     */
+    private void siftUp(int i) {
+        int state = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priority[heap[parent]] >= priority[state]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = state;
+        position[state] = i;
+    }
+
+    /**
+     * Moves the state at the given heap position down until its children have lower priorities.
+     */
+    private void siftDown(int i) {
+        int state = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] <= priority[state]) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = state;
+        position[state] = i;
+    }
+}
@@ -0,0 +1,183 @@
+package mdp;
+
+/**
+ * The stopping criteria for QLearning.learn(StoppingCriterion).
+ * Criteria that are costly to check (the Q-table and policy ones) only look at the Q-table every so many actions.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class StoppingCriteria {
+
+    /**
+     * Stops after the given amount of actions.
+     *
+     * @param steps the amount of actions of the run.
+     * @return the criterion.
+     */
+    public static StoppingCriterion maxSteps(long steps) {
+        return new StoppingCriterion() {
+            private long end;
+
+            @Override
+            public void start(QLearning learner) {
+                end = learner.getSteps() + steps;
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                return learner.getSteps() >= end;
+            }
+        };
+    }
+
+    /**
+     * Stops after the given amount of finished episodes.
+     *
+     * @param episodes the amount of episodes of the run.
+     * @return the criterion.
+     */
+    public static StoppingCriterion maxEpisodes(long episodes) {
+        return new StoppingCriterion() {
+            private long end;
+
+            @Override
+            public void start(QLearning learner) {
+                end = learner.getEpisodes() + episodes;
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                return learner.getEpisodes() >= end;
+            }
+        };
+    }
+
+    /**
+     * Stops when the run took the given amount of time. The clock is read every 1024 actions.
+     *
+     * @param millis the time budget in milliseconds.
+     * @return the criterion.
+     */
+    public static StoppingCriterion wallClock(long millis) {
+        return new StoppingCriterion() {
+            private long end;
+
+            @Override
+            public void start(QLearning learner) {
+                end = System.nanoTime() + millis * 1000000;
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                return (learner.getSteps() & 1023) == 0 && System.nanoTime() - end >= 0;
+            }
+        };
+    }
+
+    /**
+     * Stops when no Q-value changed more than the threshold over the last window of actions.
+     *
+     * @param threshold the largest change of a Q-value that counts as no change.
+     * @param window the amount of actions over which the change is measured.
+     * @return the criterion.
+     */
+    public static StoppingCriterion qDelta(double threshold, long window) {
+        return new StoppingCriterion() {
+            private double[] previous;
+            private long next;
+
+            @Override
+            public void start(QLearning learner) {
+                previous = learner.getTable().getValues().clone();
+                next = learner.getSteps() + window;
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                if (learner.getSteps() < next) {
+                    return false;
+                }
+                next = learner.getSteps() + window;
+                double[] values = learner.getTable().getValues();
+                double delta = 0;
+                for (int i = 0; i < values.length; i++) {
+                    delta = Math.max(delta, Math.abs(values[i] - previous[i]));
+                }
+                System.arraycopy(values, 0, previous, 0, values.length);
+                return delta < threshold;
+            }
+        };
+    }
+
+    /**
+     * Stops when the greedy policy stayed the same in the given amount of evaluations in a row.
+     *
+     * @param interval the amount of actions between two evaluations of the policy.
+     * @param evaluations the amount of evaluations in a row the policy has to stay the same.
+     * @return the criterion.
+     */
+    public static StoppingCriterion policyStable(long interval, int evaluations) {
+        return new StoppingCriterion() {
+            private byte[] previous;
+            private long next;
+            private int stable;
+
+            @Override
+            public void start(QLearning learner) {
+                QTable table = learner.getTable();
+                previous = new byte[table.getStates()];
+                for (int s = 0; s < previous.length; s++) {
+                    previous[s] = (byte) table.getHighestAction(s);
+                }
+                next = learner.getSteps() + interval;
+                stable = 0;
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                if (learner.getSteps() < next) {
+                    return false;
+                }
+                next = learner.getSteps() + interval;
+                QTable table = learner.getTable();
+                boolean changed = false;
+                for (int s = 0; s < previous.length; s++) {
+                    byte action = (byte) table.getHighestAction(s);
+                    if (previous[s] != action) {
+                        previous[s] = action;
+                        changed = true;
+                    }
+                }
+                stable = changed ? 0 : stable + 1;
+                return stable >= evaluations;
+            }
+        };
+    }
+
+    /**
+     * Stops as soon as one of the given criteria is met, for example a convergence criterion with a time budget.
+     * All criteria are checked after every action, so the ones that only look every so many actions keep their pace.
+     *
+     * @param criteria the criteria.
+     * @return the criterion.
+     */
+    public static StoppingCriterion anyOf(StoppingCriterion... criteria) {
+        return new StoppingCriterion() {
+            @Override
+            public void start(QLearning learner) {
+                for (StoppingCriterion criterion : criteria) {
+                    criterion.start(learner);
+                }
+            }
+
+            @Override
+            public boolean isMet(QLearning learner) {
+                boolean met = false;
+                for (StoppingCriterion criterion : criteria) {
+                    met |= criterion.isMet(learner);
+                }
+                return met;
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package mdp;
+
+/**
+ * A condition that ends a learning run, see QLearning.learn(StoppingCriterion) and the factories in StoppingCriteria.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public interface StoppingCriterion {
+
+    /**
+     * Called once when a learning run starts, so the criterion can remember where the run started.
+     *
+     * @param learner the learner that starts.
+     */
+    void start(QLearning learner);
+
+    /**
+     * Called before the first action of the run and after every action, so a run can stop without any action.
+     *
+     * @param learner the learner of the run.
+     * @return true if the run should stop.
+     */
+    boolean isMet(QLearning learner);
+}
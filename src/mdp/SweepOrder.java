@@ -0,0 +1,12 @@
+package mdp;
+
+/**
+ * Enumerates the orders in which Value Iteration can back up the states
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public enum SweepOrder {
+    FORWARD,    // i.e. in place sweeps, always from the first to the last state
+    ALTERNATING,    // i.e. in place (Gauss-Seidel) sweeps, every other sweep from the last to the first state
+    PRIORITIZED    // i.e. always back up the state with the largest Bellman error, then re-check its predecessors
+}
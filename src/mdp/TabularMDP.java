@@ -0,0 +1,606 @@
+package mdp;
+
+import java.util.Arrays;
+
+/**
+ * A Markov decision problem of any shape in a compiled, flat form: a number of states, every state owning a range of
+ * action rows and every action row owning a range of successor states with their probabilities and rewards (CSR layout).
+ * Any dynamics fit, like 8-connected movement, wind or teleporters, and a Bellman backup is plain array arithmetic.
+ *
+ * The value of an action row is its expected reward plus the discounted expected value of its successors.
+ * A state without action rows (an end state) is worth its state reward. The grid worlds of MarkovDecisionProblem
+ * are compiled into this form by TransitionTable; other problems are put together with a Builder:
+ *
+ * <pre>
+ * TabularMDP.Builder builder = new TabularMDP.Builder(3);
+ * builder.addAction(0, 0);                 // state 0, action 0
+ * builder.addTransition(1, 0.9, -0.04);    // to state 1 with probability 0.9 and reward -0.04
+ * builder.addTransition(0, 0.1, -0.04);
+ * builder.addAction(1, 0);
+ * builder.addTransition(2, 1, -0.04);
+ * builder.setReward(2, 1);                 // state 2 has no actions, it is an end state worth 1
+ * TabularMDP model = builder.build();
+ * </pre>
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class TabularMDP {
+
+    private double[] stateRewards;
+    private int[] actionStart;    // action rows of state s are actionStart[s] until actionStart[s + 1]
+    private int[] actions;    // the action of every action row, e.g. an Action ordinal
+    private double[] rowRewards;    // the expected reward of every action row
+    private int[] successorStart;    // successors of row r are successorStart[r] until successorStart[r + 1]
+    private int[] successors;
+    private double[] probabilities;
+    private double[] rewards;    // the reward of every successor entry
+    private int[] predecessorStart;    // predecessors of state s are predecessorStart[s] until predecessorStart[s + 1]
+    private int[] predecessors;
+
+    /**
+     * Constructor from the flat arrays, which are used as they are (not copied).
+     *
+     * @param stateRewards per state, its value when it has no actions.
+     * @param actionStart per state and one more, the first action row of the state.
+     * @param actions per action row, its action, every action at most once per state.
+     * @param successorStart per action row and one more, the first successor entry of the row.
+     * @param successors per successor entry, the state reached.
+     * @param probabilities per successor entry, the probability, adding up to 1 for every row.
+     * @param rewards per successor entry, the reward received.
+     * @throws IllegalArgumentException if the arrays do not fit together.
+     */
+    public TabularMDP(double[] stateRewards, int[] actionStart, int[] actions, int[] successorStart, int[] successors,
+                      double[] probabilities, double[] rewards) {
+        validate(stateRewards, actionStart, actions, successorStart, successors, probabilities, rewards);
+        setModel(stateRewards, actionStart, actions, successorStart, successors, probabilities, rewards);
+    }
+
+    /**
+     * Constructor for subclasses that compile their model themselves and call setModel.
+     */
+    protected TabularMDP() {
+    }
+
+    /**
+     * Checks that the flat arrays fit together, see the public constructor for the arrays.
+     *
+     * @throws IllegalArgumentException if they do not.
+     */
+    private static void validate(double[] stateRewards, int[] actionStart, int[] actions, int[] successorStart,
+                                 int[] successors, double[] probabilities, double[] rewards) {
+        int states = stateRewards.length;
+        int rows = actions.length;
+        if (actionStart.length != states + 1 || actionStart[0] != 0 || actionStart[states] != rows) {
+            throw new IllegalArgumentException("The action rows do not match the " + states + " states");
+        }
+        if (successorStart.length != rows + 1 || successorStart[0] != 0 || successorStart[rows] != successors.length
+            || probabilities.length != successors.length || rewards.length != successors.length) {
+            throw new IllegalArgumentException("The successor entries do not match the " + rows + " action rows");
+        }
+        for (int s = 0; s < states; s++) {
+            if (actionStart[s] > actionStart[s + 1]) {
+                throw new IllegalArgumentException("The action rows of state " + s + " are not in order");
+            }
+            // a policy names its action by id, so the id has to pick one row
+            for (int row = actionStart[s]; row < actionStart[s + 1]; row++) {
+                for (int other = actionStart[s]; other < row; other++) {
+                    if (actions[other] == actions[row]) {
+                        throw new IllegalArgumentException("State " + s + " has action " + actions[row] + " twice");
+                    }
+                }
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (successorStart[row] >= successorStart[row + 1]) {
+                throw new IllegalArgumentException("Action row " + row + " has no successors");
+            }
+            double total = 0;
+            for (int e = successorStart[row]; e < successorStart[row + 1]; e++) {
+                if (successors[e] < 0 || successors[e] >= states || !(probabilities[e] >= 0)) {
+                    throw new IllegalArgumentException("Successor entry " + e + " is not a state with a probability");
+                }
+                total += probabilities[e];
+            }
+            if (Math.abs(total - 1.0) > 1e-9) {
+                throw new IllegalArgumentException("The probabilities of action row " + row + " add up to " + total);
+            }
+        }
+    }
+
+    /**
+     * Sets the flat arrays of the model and works out the expected reward of every action row.
+     * See the public constructor for the arrays, which are not checked here. The arrays of the rows and successor
+     * entries may be longer than needed, the model only uses the rows up to actionStart[states].
+     */
+    protected void setModel(double[] stateRewards, int[] actionStart, int[] actions, int[] successorStart,
+                            int[] successors, double[] probabilities, double[] rewards) {
+        double[] rowRewards = new double[actions.length];
+        for (int row = 0; row < actionStart[actionStart.length - 1]; row++) {
+            for (int e = successorStart[row]; e < successorStart[row + 1]; e++) {
+                rowRewards[row] += probabilities[e] * rewards[e];
+            }
+        }
+        this.stateRewards = stateRewards;
+        this.actionStart = actionStart;
+        this.actions = actions;
+        this.rowRewards = rowRewards;
+        this.successorStart = successorStart;
+        this.successors = successors;
+        this.probabilities = probabilities;
+        this.rewards = rewards;
+        this.predecessorStart = null;
+        this.predecessors = null;
+    }
+
+    /**
+     * Calculates the value of an action row: its expected reward plus the discounted expected value of the successors.
+     *
+     * @param values the current values of all states.
+     * @param state the state the action row belongs to.
+     * @param row the action row.
+     * @param discount the discount factor.
+     * @return the Q-value of the action.
+     */
+    public double qValue(double[] values, int state, int row, double discount) {
+        double expectedValue = 0;
+        for (int e = successorStart[row]; e < successorStart[row + 1]; e++) {
+            expectedValue += probabilities[e] * values[successors[e]];
+        }
+        return rowRewards[row] + discount * expectedValue;
+    }
+
+    /**
+     * Calculates the Bellman backup of a state, i.e. the highest Q-value over its actions.
+     * States without actions are worth just their state reward.
+     *
+     * @param values the current values of all states.
+     * @param state the state to back up.
+     * @param discount the discount factor.
+     * @return the new value of the state.
+     */
+    public double backup(double[] values, int state, double discount) {
+        int start = actionStart[state];
+        int end = actionStart[state + 1];
+        if (start == end) {
+            return stateRewards[state];
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (int row = start; row < end; row++) {
+            double value = qValue(values, state, row, discount);
+            if (best < value) {
+                best = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the best action row of a state given the values. On a tie the first row wins.
+     *
+     * @param values the current values of all states.
+     * @param state the state of which the best action is searched.
+     * @param discount the discount factor.
+     * @return the most valuable action row, -1 if the state has no actions.
+     */
+    public int bestRow(double[] values, int state, double discount) {
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int row = actionStart[state]; row < actionStart[state + 1]; row++) {
+            double value = qValue(values, state, row, discount);
+            if (best < 0 || bestValue < value) {
+                bestValue = value;
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Calculates the value of an action row from float values, see qValue(double[], int, int, double).
+     */
+    public double qValue(float[] values, int state, int row, double discount) {
+        double expectedValue = 0;
+        for (int e = successorStart[row]; e < successorStart[row + 1]; e++) {
+            expectedValue += probabilities[e] * values[successors[e]];
+        }
+        return rowRewards[row] + discount * expectedValue;
+    }
+
+    /**
+     * Calculates the Bellman backup of a state from float values, see backup(double[], int, double).
+     */
+    public double backup(float[] values, int state, double discount) {
+        int start = actionStart[state];
+        int end = actionStart[state + 1];
+        if (start == end) {
+            return stateRewards[state];
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (int row = start; row < end; row++) {
+            double value = qValue(values, state, row, discount);
+            if (best < value) {
+                best = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the best action row of a state given float values, see bestRow(double[], int, double).
+     */
+    public int bestRow(float[] values, int state, double discount) {
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int row = actionStart[state]; row < actionStart[state + 1]; row++) {
+            double value = qValue(values, state, row, discount);
+            if (best < 0 || bestValue < value) {
+                bestValue = value;
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Replaces the action rows of some states, e.g. after a few fields of a grid changed.
+     * The rows of the other states are kept; when the amount of rows or entries changes they are moved in place
+     * with System.arraycopy, and the arrays only grow (by half) when they are full.
+     * The predecessors are made again on their next use.
+     *
+     * @param states the states to replace, in increasing order and each once.
+     * @param count the amount of states to replace.
+     * @param patch a model with count states holding the new state rewards and rows, state i for states[i].
+     */
+    protected void replaceStates(int[] states, int count, TabularMDP patch) {
+        int rows = getRows();
+        int entries = successorStart[rows];
+        // the old place of the rows and entries of every replaced state, before anything moves
+        int[] rowFrom = new int[count + 1];
+        int[] rowTo = new int[count + 1];
+        int[] entryFrom = new int[count + 1];
+        int[] entryTo = new int[count + 1];
+        int[] rowShift = new int[count + 1];    // per kept range before replaced state i, how far it moves
+        int[] entryShift = new int[count + 1];
+        int rowDelta = 0;
+        int entryDelta = 0;
+        for (int i = 0; i < count; i++) {
+            rowFrom[i] = actionStart[states[i]];
+            rowTo[i] = actionStart[states[i] + 1];
+            entryFrom[i] = successorStart[rowFrom[i]];
+            entryTo[i] = successorStart[rowTo[i]];
+            rowShift[i] = rowDelta;
+            entryShift[i] = entryDelta;
+            int newRows = patch.actionStart[i + 1] - patch.actionStart[i];
+            rowDelta += newRows - (rowTo[i] - rowFrom[i]);
+            entryDelta += patch.successorStart[patch.actionStart[i + 1]] - patch.successorStart[patch.actionStart[i]]
+                - (entryTo[i] - entryFrom[i]);
+        }
+        rowShift[count] = rowDelta;
+        entryShift[count] = entryDelta;
+        if (rows + rowDelta + 1 > successorStart.length) {
+            int length = Math.max(rows + rowDelta, successorStart.length + successorStart.length / 2);
+            actions = Arrays.copyOf(actions, length);
+            rowRewards = Arrays.copyOf(rowRewards, length);
+            successorStart = Arrays.copyOf(successorStart, length + 1);
+        }
+        if (entries + entryDelta > successors.length) {
+            int length = Math.max(entries + entryDelta, successors.length + successors.length / 2);
+            successors = Arrays.copyOf(successors, length);
+            probabilities = Arrays.copyOf(probabilities, length);
+            rewards = Arrays.copyOf(rewards, length);
+        }
+
+        // the kept range k lies between replaced state k - 1 and k
+        int[] keptRowStart = new int[count + 1];
+        int[] keptRowEnd = new int[count + 1];
+        int[] keptEntryStart = new int[count + 1];
+        int[] keptEntryEnd = new int[count + 1];
+        for (int k = 0; k <= count; k++) {
+            keptRowStart[k] = k == 0 ? 0 : rowTo[k - 1];
+            keptRowEnd[k] = k == count ? rows : rowFrom[k];
+            keptEntryStart[k] = k == 0 ? 0 : entryTo[k - 1];
+            keptEntryEnd[k] = k == count ? entries : entryFrom[k];
+        }
+        for (Object array : new Object[]{actions, rowRewards, successorStart}) {
+            moveRanges(array, keptRowStart, keptRowEnd, rowShift, count + 1);
+        }
+        for (Object array : new Object[]{successors, probabilities, rewards}) {
+            moveRanges(array, keptEntryStart, keptEntryEnd, entryShift, count + 1);
+        }
+        for (int k = 0; k <= count; k++) {
+            if (entryShift[k] != 0) {
+                for (int row = keptRowStart[k] + rowShift[k]; row < keptRowEnd[k] + rowShift[k]; row++) {
+                    successorStart[row] += entryShift[k];
+                }
+            }
+            if (rowShift[k] != 0) {
+                int from = k == 0 ? 0 : states[k - 1] + 1;
+                int to = k == count ? getStates() : states[k];
+                for (int s = from; s < to; s++) {
+                    actionStart[s] += rowShift[k];
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int row = rowFrom[i] + rowShift[i];
+            int entry = entryFrom[i] + entryShift[i];
+            stateRewards[states[i]] = patch.stateRewards[i];
+            actionStart[states[i]] = row;
+            for (int r = patch.actionStart[i]; r < patch.actionStart[i + 1]; r++) {
+                actions[row] = patch.actions[r];
+                rowRewards[row] = patch.rowRewards[r];
+                successorStart[row] = entry;
+                for (int e = patch.successorStart[r]; e < patch.successorStart[r + 1]; e++) {
+                    successors[entry] = patch.successors[e];
+                    probabilities[entry] = patch.probabilities[e];
+                    rewards[entry] = patch.rewards[e];
+                    entry++;
+                }
+                row++;
+            }
+        }
+        actionStart[getStates()] = rows + rowDelta;
+        successorStart[rows + rowDelta] = entries + entryDelta;
+        this.predecessorStart = null;
+        this.predecessors = null;
+    }
+
+    /**
+     * Moves ranges of an array by their own shift, without one range overwriting another before it moved.
+     * The ranges are in order and do not overlap before or after moving: those moving left are moved from the left
+     * and those moving right from the right.
+     */
+    private static void moveRanges(Object array, int[] start, int[] end, int[] shift, int ranges) {
+        for (int k = 0; k < ranges; k++) {
+            if (shift[k] < 0 && end[k] > start[k]) {
+                System.arraycopy(array, start[k], array, start[k] + shift[k], end[k] - start[k]);
+            }
+        }
+        for (int k = ranges - 1; k >= 0; k--) {
+            if (shift[k] > 0 && end[k] > start[k]) {
+                System.arraycopy(array, start[k], array, start[k] + shift[k], end[k] - start[k]);
+            }
+        }
+    }
+
+    /**
+     * Makes the reverse of the model: for every state the other states from which it can be reached.
+     * A state is not listed as its own predecessor, so whoever changes its value checks the state itself again.
+     * Only made on first use, since just the prioritized algorithms need it.
+     */
+    private void createPredecessors() {
+        int states = getStates();
+        int[] counts = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            for (int e = successorStart[actionStart[s]]; e < successorStart[actionStart[s + 1]]; e++) {
+                if (successors[e] != s) {
+                    counts[successors[e] + 1]++;
+                }
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            counts[s + 1] += counts[s];
+        }
+        int[] predecessors = new int[counts[states]];
+        int[] fill = new int[states];
+        System.arraycopy(counts, 0, fill, 0, states);
+        for (int s = 0; s < states; s++) {
+            for (int e = successorStart[actionStart[s]]; e < successorStart[actionStart[s + 1]]; e++) {
+                int next = successors[e];
+                // a state reaches the same neighbour with several actions, list it only once
+                if (next != s && (fill[next] == counts[next] || predecessors[fill[next] - 1] != s)) {
+                    predecessors[fill[next]++] = s;
+                }
+            }
+        }
+        // squeeze out the room left by the duplicates
+        int size = 0;
+        int[] start = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            start[s] = size;
+            for (int i = counts[s]; i < fill[s]; i++) {
+                predecessors[size++] = predecessors[i];
+            }
+        }
+        start[states] = size;
+        this.predecessorStart = start;
+        this.predecessors = Arrays.copyOf(predecessors, size);
+    }
+
+    /**
+     * Getter for the first predecessor entry of a state, the entries of state s end at getPredecessorStart(s + 1).
+     */
+    public int getPredecessorStart(int state) {
+        if (predecessorStart == null) {
+            createPredecessors();
+        }
+        return predecessorStart[state];
+    }
+
+    /**
+     * Getter for the predecessor state of an entry.
+     */
+    public int getPredecessor(int entry) {
+        return predecessors[entry];
+    }
+
+    /**
+     * Getter for the amount of states.
+     */
+    public int getStates() {
+        return stateRewards.length;
+    }
+
+    /**
+     * Getter for the total amount of action rows.
+     */
+    public int getRows() {
+        return actionStart[actionStart.length - 1];
+    }
+
+    /**
+     * Getter for the first action row of a state, the rows of state s end at getActionStart(s + 1).
+     */
+    public int getActionStart(int state) {
+        return actionStart[state];
+    }
+
+    /**
+     * Getter for the action of an action row.
+     */
+    public int getActionId(int row) {
+        return actions[row];
+    }
+
+    /**
+     * Getter for the expected reward of an action row.
+     */
+    public double getRowReward(int row) {
+        return rowRewards[row];
+    }
+
+    /**
+     * Getter for the first successor entry of an action row, the entries of row r end at getSuccessorStart(r + 1).
+     */
+    public int getSuccessorStart(int row) {
+        return successorStart[row];
+    }
+
+    /**
+     * Getter for the successor state of an entry.
+     */
+    public int getSuccessor(int entry) {
+        return successors[entry];
+    }
+
+    /**
+     * Getter for the probability of an entry.
+     */
+    public double getProbability(int entry) {
+        return probabilities[entry];
+    }
+
+    /**
+     * Getter for the reward of an entry.
+     */
+    public double getTransitionReward(int entry) {
+        return rewards[entry];
+    }
+
+    /**
+     * Getter for the state reward of a state, its value when it has no actions.
+     */
+    public double getReward(int state) {
+        return stateRewards[state];
+    }
+
+    /**
+     * Puts a TabularMDP together state by state. The action rows have to be added in the order of their states,
+     * and the transitions of a row right after the row. Transitions of a row to the same state are merged.
+     */
+    public static class Builder {
+
+        private double[] stateRewards;
+        private int[] actionStart;
+        private int[] actions = new int[16];
+        private int[] successorStart = new int[17];
+        private int[] successors = new int[64];
+        private double[] probabilities = new double[64];
+        private double[] rewards = new double[64];
+        private int rows;
+        private int entries;
+        private int lastState;
+
+        /**
+         * Constructor of a builder for the given amount of states, all without actions and with state reward 0.
+         *
+         * @param states the amount of states.
+         */
+        public Builder(int states) {
+            this.stateRewards = new double[states];
+            this.actionStart = new int[states + 1];
+        }
+
+        /**
+         * Sets the state reward of a state, its value when it has no actions.
+         */
+        public void setReward(int state, double reward) {
+            stateRewards[state] = reward;
+        }
+
+        /**
+         * Adds an action row to a state. States have to get their rows in order.
+         *
+         * @param state the state.
+         * @param action the action, e.g. an Action ordinal.
+         * @return the index of the action row.
+         */
+        public int addAction(int state, int action) {
+            if (state < lastState || state >= stateRewards.length) {
+                throw new IllegalArgumentException("Actions have to be added state by state, " + state + " comes after " + lastState);
+            }
+            for (int s = lastState + 1; s <= state; s++) {
+                actionStart[s] = rows;
+            }
+            lastState = state;
+            if (rows == actions.length) {
+                actions = Arrays.copyOf(actions, rows * 2);
+                successorStart = Arrays.copyOf(successorStart, rows * 2 + 1);
+            }
+            actions[rows] = action;
+            successorStart[rows] = entries;
+            rows++;
+            successorStart[rows] = entries;
+            return rows - 1;
+        }
+
+        /**
+         * Adds a transition to the last added action row.
+         *
+         * @param next the state reached.
+         * @param probability the probability of reaching it.
+         * @param reward the reward received when reaching it.
+         */
+        public void addTransition(int next, double probability, double reward) {
+            if (rows == 0) {
+                throw new IllegalStateException("Add an action before its transitions");
+            }
+            for (int e = successorStart[rows - 1]; e < entries; e++) {
+                if (successors[e] == next) {
+                    // merge, keeping the expected reward of the two
+                    double total = probabilities[e] + probability;
+                    rewards[e] = total > 0 ? (probabilities[e] * rewards[e] + probability * reward) / total : reward;
+                    probabilities[e] = total;
+                    return;
+                }
+            }
+            if (entries == successors.length) {
+                successors = Arrays.copyOf(successors, entries * 2);
+                probabilities = Arrays.copyOf(probabilities, entries * 2);
+                rewards = Arrays.copyOf(rewards, entries * 2);
+            }
+            successors[entries] = next;
+            probabilities[entries] = probability;
+            rewards[entries] = reward;
+            entries++;
+            successorStart[rows] = entries;
+        }
+
+        /**
+         * Builds the model.
+         *
+         * @return the model.
+         * @throws IllegalArgumentException if a row has no transitions or its probabilities do not add up to 1.
+         */
+        public TabularMDP build() {
+            int states = stateRewards.length;
+            for (int s = lastState + 1; s <= states; s++) {
+                actionStart[s] = rows;
+            }
+            return new TabularMDP(stateRewards, actionStart, Arrays.copyOf(actions, rows),
+                Arrays.copyOf(successorStart, rows + 1), Arrays.copyOf(successors, entries),
+                Arrays.copyOf(probabilities, entries), Arrays.copyOf(rewards, entries));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package mdp;
+
+import java.util.Arrays;
+
+/**
+ * A model of a grid world learned from the actions an agent made, for planning (Dyna-Q).
+ * For every state-action it counts how often each next state was reached and the rewards received there,
+ * so the model estimates the probabilities and expected rewards of the mdp.
+ *
+ * In a grid an action mostly leads to the state itself or one of its four neighbours, so every state-action
+ * has room for five outcomes, in primitive arrays indexed by (state * 4 + action) * 5 + outcome.
+ * Outcomes past those five (e.g. an end state, or a mdp with other dynamics) go into extra slots after them,
+ * linked per state-action and grown when full, so a state-action can have any amount of outcomes.
+ * The outcomes leading into a state are linked together, so the predecessors of a state can be found
+ * for prioritized sweeping.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class TabularModel {
+
+    public final static int OUTCOMES = 5;
+
+    private int[] totals;    // amount of times each state-action was taken
+    private int[] nexts;
+    private int[] counts;
+    private double[] rewardSums;
+    private int[] firstPredecessor;    // per state, the first outcome slot leading into it, -1 for none
+    private int[] nextPredecessor;     // per outcome slot, the next outcome slot leading into the same state
+    private int[] observed;            // the state-actions taken at least once, in order of their first time
+    private int observedCount;
+    private int inlineSlots;           // the amount of slots with room for five outcomes per state-action
+    private int[] firstExtra;          // per state-action, its first extra slot, -1 for none; made at the first one
+    private int[] nextExtra;           // per extra slot, the next extra slot of the same state-action, -1 for none
+    private int[] extraOwner;          // per extra slot, its state-action
+    private int extraCount;
+
+    /**
+     * Constructor of an empty model.
+     *
+     * @param states the amount of states of the grid world.
+     */
+    public TabularModel(int states) {
+        int stateActions = states * QTable.ACTIONS;
+        this.totals = new int[stateActions];
+        this.nexts = new int[stateActions * OUTCOMES];
+        this.counts = new int[stateActions * OUTCOMES];
+        this.rewardSums = new double[stateActions * OUTCOMES];
+        this.firstPredecessor = new int[states];
+        this.nextPredecessor = new int[stateActions * OUTCOMES];
+        this.observed = new int[stateActions];
+        this.inlineSlots = stateActions * OUTCOMES;
+        Arrays.fill(firstPredecessor, -1);
+    }
+
+    /**
+     * Adds an action the agent made to the model.
+     *
+     * @param state index of the state the action was taken in.
+     * @param action ordinal of the action.
+     * @param reward the reward received.
+     * @param next index of the resulting state, -1 for an end state that is left right away.
+     */
+    public void observe(int state, int action, double reward, int next) {
+        int stateAction = state * QTable.ACTIONS + action;
+        if (totals[stateAction]++ == 0) {
+            observed[observedCount++] = stateAction;
+        }
+        int base = stateAction * OUTCOMES;
+        for (int o = 0; o < OUTCOMES; o++) {
+            int slot = base + o;
+            if (counts[slot] == 0) {
+                fillSlot(slot, reward, next);
+                return;
+            } else if (nexts[slot] == next) {
+                counts[slot]++;
+                rewardSums[slot] += reward;
+                return;
+            }
+        }
+        int last = -1;
+        for (int slot = firstExtra(stateAction); slot >= 0; slot = nextExtra[slot - inlineSlots]) {
+            if (nexts[slot] == next) {
+                counts[slot]++;
+                rewardSums[slot] += reward;
+                return;
+            }
+            last = slot;
+        }
+        int slot = addExtra(stateAction);
+        if (last < 0) {
+            firstExtra[stateAction] = slot;
+        } else {
+            nextExtra[last - inlineSlots] = slot;
+        }
+        fillSlot(slot, reward, next);
+    }
+
+    /**
+     * Puts the first observation of a next state in an empty slot, and links it to the predecessors of that state.
+     */
+    private void fillSlot(int slot, double reward, int next) {
+        nexts[slot] = next;
+        counts[slot] = 1;
+        rewardSums[slot] = reward;
+        if (next >= 0) {
+            nextPredecessor[slot] = firstPredecessor[next];
+            firstPredecessor[next] = slot;
+        }
+    }
+
+    /**
+     * Getter for the first extra slot of a state-action, -1 if it has none.
+     */
+    private int firstExtra(int stateAction) {
+        return firstExtra == null ? -1 : firstExtra[stateAction];
+    }
+
+    /**
+     * Makes a new extra slot for a state-action, growing the slot arrays when they are full.
+     *
+     * @return the index of the slot, not yet linked to the others of the state-action.
+     */
+    private int addExtra(int stateAction) {
+        if (firstExtra == null) {
+            firstExtra = new int[totals.length];
+            Arrays.fill(firstExtra, -1);
+            nextExtra = new int[16];
+            extraOwner = new int[16];
+        }
+        if (extraCount == nextExtra.length) {
+            nextExtra = Arrays.copyOf(nextExtra, extraCount * 2);
+            extraOwner = Arrays.copyOf(extraOwner, extraCount * 2);
+        }
+        int slot = inlineSlots + extraCount;
+        if (slot >= nexts.length) {
+            int length = nexts.length + Math.max(16, extraCount);
+            nexts = Arrays.copyOf(nexts, length);
+            counts = Arrays.copyOf(counts, length);
+            rewardSums = Arrays.copyOf(rewardSums, length);
+            nextPredecessor = Arrays.copyOf(nextPredecessor, length);
+        }
+        nextExtra[extraCount] = -1;
+        extraOwner[extraCount] = stateAction;
+        extraCount++;
+        return slot;
+    }
+
+    /**
+     * The expected Q-value of a state-action according to the model: the sum over the seen next states of
+     * p(next) * (mean reward + discount * highest Q-value of next).
+     *
+     * @param table the current Q-values.
+     * @param stateAction index of the state-action (state * 4 + action), taken at least once.
+     * @param discount the discount factor.
+     * @return double of the expected value.
+     */
+    public double target(QTable table, int stateAction, double discount) {
+        int base = stateAction * OUTCOMES;
+        double sum = 0;
+        for (int o = 0; o < OUTCOMES && counts[base + o] > 0; o++) {
+            sum += slotTarget(table, base + o, discount);
+        }
+        for (int slot = firstExtra(stateAction); slot >= 0; slot = nextExtra[slot - inlineSlots]) {
+            sum += slotTarget(table, slot, discount);
+        }
+        return sum / totals[stateAction];
+    }
+
+    /**
+     * The summed reward and discounted value of all observations of an outcome slot.
+     */
+    private double slotTarget(QTable table, int slot, double discount) {
+        double value = nexts[slot] < 0 ? 0 : table.getHighestValue(nexts[slot]);
+        return rewardSums[slot] + counts[slot] * discount * value;
+    }
+
+    /**
+     * Getter for the amount of state-actions taken at least once.
+     */
+    public int getObservedCount() {
+        return observedCount;
+    }
+
+    /**
+     * Getter for the i-th state-action taken (state * 4 + action).
+     */
+    public int getObserved(int i) {
+        return observed[i];
+    }
+
+    /**
+     * Getter for the amount of times a state-action was taken.
+     */
+    public int getTotal(int stateAction) {
+        return totals[stateAction];
+    }
+
+    /**
+     * Getter for the first outcome slot leading into a state, -1 if none was seen.
+     */
+    public int getFirstPredecessor(int state) {
+        return firstPredecessor[state];
+    }
+
+    /**
+     * Getter for the next outcome slot leading into the same state as the given slot, -1 if there is none.
+     */
+    public int getNextPredecessor(int slot) {
+        return nextPredecessor[slot];
+    }
+
+    /**
+     * Getter for the state-action (state * 4 + action) an outcome slot belongs to.
+     */
+    public int getStateAction(int slot) {
+        return slot < inlineSlots ? slot / OUTCOMES : extraOwner[slot - inlineSlots];
+    }
+}
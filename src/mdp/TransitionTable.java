@@ -0,0 +1,323 @@
+package mdp;
+
+import java.util.Arrays;
+
+/**
+ * The transition model of a grid world compiled into a TabularMDP.
+ * States are numbered row by row (index = y * width + x), the action of a row is the ordinal of its Action
+ * and every transition gets the reward of the state it starts from.
+ *
+ * The model follows the dynamics of MarkovDecisionProblem.performAction: a move into a wall or out of the grid
+ * leaves the agent where it is, and end states (rewards) have no actions since the episode stops there.
+ * Moves into walls are left out, except on a field walled in on all sides: there every move stays in place,
+ * so it gets a single UP row that loops back to itself and every empty field has an action.
+ *
+ * After a few fields changed, update() compiles just those fields and their neighbours again and patches their rows
+ * into the table. The predecessors of a state are its four neighbours, so they never have to be made or patched.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class TransitionTable extends TabularMDP {
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private int width;
+    private int height;
+
+    /**
+     * Compiles the landscape, rewards and action probabilities of the given mdp into the flat table.
+     * Changes to the mdp afterwards are not reflected, compile again or call update() in that case.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     */
+    public TransitionTable(MarkovDecisionProblem mdp) {
+        this.width = mdp.getWidth();
+        this.height = mdp.getHeight();
+        compile(mdp, null, width * height, this);
+    }
+
+    /**
+     * Compiles the given states of the mdp again and patches their rows into the table, after their fields or those
+     * of their neighbours changed. The rewards and probabilities of the mdp should be the same as when compiled.
+     *
+     * @param mdp the markov decision problem this table was compiled from.
+     * @param states the states to compile again, in increasing order and each once.
+     * @param count the amount of states.
+     */
+    public void update(MarkovDecisionProblem mdp, int[] states, int count) {
+        TabularMDP patch = new TabularMDP();
+        compile(mdp, states, count, patch);
+        replaceStates(states, count, patch);
+    }
+
+    /**
+     * Compiles states of the mdp into the flat arrays of a model.
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param list the states to compile, null for all of them.
+     * @param states the amount of states to compile; state i of the model is list[i].
+     * @param target the model that gets the arrays.
+     */
+    private void compile(MarkovDecisionProblem mdp, int[] list, int states, TabularMDP target) {
+        double[] probs = mdp.getProbs();
+        Action[] moves = new Action[]{Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
+        Action[][] outcomes = new Action[moves.length][];
+        for (int m = 0; m < moves.length; m++) {
+            // in the same order as the probabilities of getProbs()
+            outcomes[m] = new Action[]{moves[m], Action.previousAction(moves[m]), Action.nextAction(moves[m]),
+                Action.backAction(moves[m]), Action.NOTHING};
+        }
+
+        double[] stateRewards = new double[states];
+        int[] actionStart = new int[states + 1];
+        // at most four rows per state, the amount of entries per row is only known while compiling
+        int capacity = (int) Math.min(4L * states, MAX_ARRAY - 1);
+        int[] actions = new int[capacity];
+        int[] successorStart = new int[capacity + 1];
+        int[] successors = new int[capacity];
+        double[] probabilities = new double[capacity];
+
+        int rows = 0;
+        int entries = 0;
+        for (int i = 0; i < states; i++) {
+            int s = list == null ? i : list[i];
+            int x = getX(s);
+            int y = getY(s);
+            Field field = mdp.getField(x, y);
+            stateRewards[i] = getReward(mdp, field);
+            actionStart[i] = rows;
+            if (field != Field.EMPTY) {
+                // obstacles can not be visited and end states stop the episode
+                continue;
+            }
+            int open = 0;
+            for (int m = 0; m < moves.length; m++) {
+                if (isBlocked(mdp, x, y, moves[m])) {
+                    continue;
+                }
+                open++;
+                if (rows + 1 >= actions.length) {
+                    actions = Arrays.copyOf(actions, grow(actions.length, rows + 1));
+                    successorStart = Arrays.copyOf(successorStart, actions.length + 1);
+                }
+                if (entries + 5 > successors.length) {
+                    successors = Arrays.copyOf(successors, grow(successors.length, entries + 5L));
+                    probabilities = Arrays.copyOf(probabilities, successors.length);
+                }
+                int first = entries;
+                for (int o = 0; o < outcomes[m].length; o++) {
+                    if (probs[o] <= 0) {
+                        continue;
+                    }
+                    Action outcome = outcomes[m][o];
+                    int next = isBlocked(mdp, x, y, outcome) ? s : getNeighbour(s, outcome);
+                    // outcomes ending up in the same state are merged into one entry
+                    int e = first;
+                    while (e < entries && successors[e] != next) {
+                        e++;
+                    }
+                    if (e == entries) {
+                        successors[entries] = next;
+                        probabilities[entries] = 0;
+                        entries++;
+                    }
+                    probabilities[e] += probs[o];
+                }
+                actions[rows] = moves[m].ordinal();
+                rows++;
+                successorStart[rows] = entries;
+            }
+            if (open == 0) {
+                // walled in, every move leaves the agent where it is
+                if (rows + 1 >= actions.length) {
+                    actions = Arrays.copyOf(actions, grow(actions.length, rows + 1));
+                    successorStart = Arrays.copyOf(successorStart, actions.length + 1);
+                }
+                if (entries + 1 > successors.length) {
+                    successors = Arrays.copyOf(successors, grow(successors.length, entries + 1L));
+                    probabilities = Arrays.copyOf(probabilities, successors.length);
+                }
+                successors[entries] = s;
+                probabilities[entries] = 1;
+                entries++;
+                actions[rows] = Action.UP.ordinal();
+                rows++;
+                successorStart[rows] = entries;
+            }
+        }
+        actionStart[states] = rows;
+        successorStart = Arrays.copyOf(successorStart, rows + 1);
+        double[] rewards = new double[entries];
+        for (int s = 0; s < states; s++) {
+            Arrays.fill(rewards, successorStart[actionStart[s]], successorStart[actionStart[s + 1]], stateRewards[s]);
+        }
+        target.setModel(stateRewards, actionStart, Arrays.copyOf(actions, rows), successorStart,
+            Arrays.copyOf(successors, entries), Arrays.copyOf(probabilities, entries), rewards);
+    }
+
+    /**
+     * Gives the new length of a full array, doubling it but never past the largest possible array.
+     *
+     * @param length the current length.
+     * @param needed the length that is needed at least.
+     * @return the new length.
+     */
+    private static int grow(int length, long needed) {
+        if (needed > MAX_ARRAY - 1) {
+            throw new IllegalArgumentException("The transition table needs more than " + (MAX_ARRAY - 1)
+                + " entries, the grid is too large for a TransitionTable (see MappedValueIteration).");
+        }
+        return (int) Math.max(needed, Math.min(2L * Math.max(length, 1), MAX_ARRAY - 1));
+    }
+
+    /**
+     * Getter for the first predecessor entry of a state: the entries of a state are its four neighbours,
+     * whether they can reach it or not.
+     */
+    @Override
+    public int getPredecessorStart(int state) {
+        return state * 4;
+    }
+
+    /**
+     * Getter for the predecessor state of an entry, the neighbour in the direction of entry % 4.
+     * A neighbour outside the grid is given as the state itself, which is checked again anyway.
+     * Checking a neighbour that can not reach the state (an obstacle, an end state) finds no Bellman error.
+     */
+    @Override
+    public int getPredecessor(int entry) {
+        int state = entry / 4;
+        int x = getX(state);
+        int y = getY(state);
+        switch (entry % 4) {
+            case 0:
+                return y < height - 1 ? state + width : state;
+            case 1:
+                return y > 0 ? state - width : state;
+            case 2:
+                return x > 0 ? state - 1 : state;
+            default:
+                return x < width - 1 ? state + 1 : state;
+        }
+    }
+
+    /**
+     * Finds the best action of a state given the values.
+     *
+     * @param values the current values of all states.
+     * @param state the state of which the best action is searched.
+     * @param discount the discount factor.
+     * @return the most valuable action, null if the state has no actions.
+     */
+    public Action bestAction(double[] values, int state, double discount) {
+        int row = bestRow(values, state, discount);
+        return row < 0 ? null : getAction(row);
+    }
+
+    /**
+     * Finds the best action of a state given float values, see bestAction(double[], int, double).
+     */
+    public Action bestAction(float[] values, int state, double discount) {
+        int row = bestRow(values, state, discount);
+        return row < 0 ? null : getAction(row);
+    }
+
+    /**
+     * Checks whether the given move from the given position would leave the grid or hit an obstacle.
+     */
+    private static boolean isBlocked(MarkovDecisionProblem mdp, int x, int y, Action move) {
+        switch (move) {
+            case UP:
+                return y >= mdp.getHeight() - 1 || mdp.getField(x, y + 1) == Field.OBSTACLE;
+            case DOWN:
+                return y <= 0 || mdp.getField(x, y - 1) == Field.OBSTACLE;
+            case LEFT:
+                return x <= 0 || mdp.getField(x - 1, y) == Field.OBSTACLE;
+            case RIGHT:
+                return x >= mdp.getWidth() - 1 || mdp.getField(x + 1, y) == Field.OBSTACLE;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Getter for the reward of a field.
+     */
+    private static double getReward(MarkovDecisionProblem mdp, Field field) {
+        switch (field) {
+            case EMPTY:
+                return mdp.getNoReward();
+            case REWARD:
+                return mdp.getPosReward();
+            case NEGREWARD:
+                return mdp.getNegReward();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Getter for the index of the state next to the given one, does not check the bounds.
+     */
+    private int getNeighbour(int state, Action move) {
+        switch (move) {
+            case UP:
+                return state + width;
+            case DOWN:
+                return state - width;
+            case LEFT:
+                return state - 1;
+            case RIGHT:
+                return state + 1;
+            default:
+                return state;
+        }
+    }
+
+    /**
+     * Getter for the index of a state.
+     *
+     * @param x X coordinate of the state in the grid world.
+     * @param y Y coordinate of the state in the grid world.
+     * @return integer index of the state.
+     */
+    public int getIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Getter for the X coordinate of a state.
+     */
+    public int getX(int state) {
+        return state % width;
+    }
+
+    /**
+     * Getter for the Y coordinate of a state.
+     */
+    public int getY(int state) {
+        return state / width;
+    }
+
+    /**
+     * Getter for the action of an action row.
+     */
+    public Action getAction(int row) {
+        return ACTIONS[getActionId(row)];
+    }
+
+    /**
+     * Getter for the width of the grid world.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the height of the grid world.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,12 @@
+package mdp;
+
+/**
+ * The value of the next state that the learners of QLearning bootstrap from.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public enum UpdateRule {
+    Q_LEARNING,       // the highest Q-value of the next state (off-policy)
+    SARSA,            // the Q-value of the action that will be taken in the next state (on-policy)
+    EXPECTED_SARSA    // the Q-values of the next state weighted by the probabilities of the exploration
+}
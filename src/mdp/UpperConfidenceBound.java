@@ -0,0 +1,61 @@
+package mdp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Upper confidence bound (UCB1) exploration: takes the action with the highest Q-value plus a bonus
+ * that is large for actions rarely tried in the state. Actions never tried in the state are taken first.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class UpperConfidenceBound implements Exploration {
+
+    private double c;
+
+    /**
+     * Constructor.
+     *
+     * @param c the weight of the exploration bonus, should be in the order of the differences between Q-values.
+     */
+    public UpperConfidenceBound(double c) {
+        this.c = c;
+    }
+
+    @Override
+    public int chooseAction(QTable table, int[] visits, int state, long step, SplittableRandom rand) {
+        int offset = state * QTable.ACTIONS;
+        int total = 0;
+        for (int a = 0; a < QTable.ACTIONS; a++) {
+            if (visits[offset + a] == 0) {
+                return a;
+            }
+            total += visits[offset + a];
+        }
+        double log = Math.log(total);
+        int best = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < QTable.ACTIONS; a++) {
+            double value = table.getValue(state, a) + c * Math.sqrt(log / visits[offset + a]);
+            if (bestValue < value) {
+                bestValue = value;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * UCB is deterministic, so the chosen action has probability 1.
+     */
+    @Override
+    public void getProbabilities(QTable table, int[] visits, int state, long step, double[] probabilities) {
+        Arrays.fill(probabilities, 0);
+        probabilities[chooseAction(table, visits, state, step, null)] = 1;
+    }
+
+    @Override
+    public double getExplorationRate(long step) {
+        return c;
+    }
+}
@@ -1,10 +1,5 @@
 package mdp;
 
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Random;
-
 /**
  * Class containing the static methods used though out the Value Iteration and Q-Learning algorithms.
  *
@@ -45,34 +40,4 @@ public class Utilities {
         }
         return indexOfMax;
     }
-
-    /**
-     * Dumps the supplied information of the cumulative reward to the .csv file.
-     * The information can then be loaded into R, Python, etc and plotted.
-     *
-     * @param timedCumulativeReward the array list of doubles from the Q-Learning algorithm.
-     */
-    public static void dumpQInfo(ArrayList<Double> timedCumulativeReward) {
-        try {
-            Random rand = new Random();
-            PrintWriter pw = new PrintWriter(new File("cumulative_rewards" + rand.nextInt(100) + ".csv"));
-            StringBuilder sb = new StringBuilder();
-            sb.append("id");
-            sb.append(',');
-            sb.append("Reward");
-            sb.append('\n');
-
-            int i = 1;
-            for (double reward : timedCumulativeReward) {
-                sb.append(i);
-                sb.append(',');
-                sb.append(reward);
-                sb.append('\n');
-                i++;
-            }
-            pw.write(sb.toString());
-            pw.close();
-        } catch (Exception ignored) {
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,22 +1,55 @@
 package mdp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A class representing the Value Iteration algorithm.
  *
+ * After watch() it listens to the mdp and remembers which fields changed, so update() can re-solve
+ * starting from the previous values and only propagate from the changed fields.
+ * Call close() when the value iteration is not used anymore, so the mdp does not keep it around.
+ *
+ * Besides grid worlds it solves any TabularMDP. The values and best actions of such a model are read with
+ * getValue(state) and getBestAction(state); the grid specific methods (update, getAction) are not available then.
+ *
  * @author David Leeftink and Mantas Makelis
  */
-public class ValueIteration {
+public class ValueIteration implements SolvedPolicy, LandscapeListener, AutoCloseable {
 
-    private MarkovDecisionProblem mdp;
-    private double[] probDistribution; // always the same format: pPerform, pSidestep/2, pSidestep/2, pBackStep, pNoStep
+    private static final Action[] ACTIONS = Action.values();
+    private static final int MAX_CHANGED_SHARE = 8;    // more than 1 / 8 of the states changed and update() solves again
+
+    private MarkovDecisionProblem mdp;    // null when solving a TabularMDP directly
+    private TransitionTable table;
+    private TabularMDP model;    // the table for grid worlds
     private double discount;
-    private double[][] valueLandscape;
-    private double[][] rewardLandscape;
-    private Action[][] policyLandscape;
+    private int states;
+    private double[] values;    // indexed like the model, for grid worlds y * width + x
+    private float[] floatValues;    // used instead of values when compact
+    private byte[] policy;    // Action ordinal of every state, -1 if it has none
+    private boolean compact;
     private int iterations;
-    private int complexity;
+    private double epsilon;
+    private boolean boundedEpsilon;
+    private int sweeps;
+    private double residual;
+    private long complexity;
+    private int parallelism;
+    private SweepOrder sweepOrder;
+    private long backups;
+    private int[] changedStates;
+    private int changedCount;
+    private boolean[] changed;    // per state, whether it is in changedStates
+    private boolean modelChanged;
+    private boolean watching;
+    private StatePriorityQueue updateQueue;    // kept between updates, empty in between
+    private int[] touchedStates;    // the states backed up by the running update
+    private int touchedCount;
+    private boolean[] touched;
+    private double[][] valueLandscape;
 
     /**
      * Constructor and initializer of the value iteration.
@@ -26,80 +59,500 @@ public class ValueIteration {
      * @param mdp the initialised markov decision problem class which contains grid world.
      */
     public ValueIteration(MarkovDecisionProblem mdp) {
+        this(mdp, true);
+    }
+
+    /**
+     * Constructor and initializer of the value iteration.
+     * When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param mdp the initialised markov decision problem class which contains grid world.
+     * @param solve whether the optimal policy should be calculated right away.
+     */
+    public ValueIteration(MarkovDecisionProblem mdp, boolean solve) {
         this.mdp = mdp;
-        this.probDistribution = mdp.getProbs();
-        this.valueLandscape = new double[mdp.getWidth()][mdp.getHeight()];
-        this.rewardLandscape = createRewardLandscape();
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Constructor and initializer of the value iteration of a general model.
+     * When solve is false nothing is calculated yet, so the settings can be changed before calling solve().
+     *
+     * @param model the compiled markov decision problem.
+     * @param solve whether the optimal values should be calculated right away.
+     */
+    public ValueIteration(TabularMDP model, boolean solve) {
+        this.model = model;
+        initialise();
+        if (solve) {
+            solve();
+        }
+    }
+
+    /**
+     * Sets the default settings.
+     */
+    private void initialise() {
         this.discount = 0.86;
         this.iterations = 1000;
+        this.epsilon = 0;
+        this.boundedEpsilon = false;
+        this.parallelism = 1;
+        this.sweepOrder = SweepOrder.FORWARD;
+        this.changedStates = new int[16];
+        this.compact = false;
+    }
+
+    /**
+     * Calculates the values and the optimal policy with the current settings.
+     * The landscape and probabilities are compiled from the mdp again, so it can be called after the mdp changed.
+     */
+    public void solve() {
+        if (mdp != null) {
+            this.table = new TransitionTable(mdp);
+            this.model = table;
+        }
+        if (updateQueue != null && states != model.getStates()) {
+            updateQueue = null;
+        }
+        this.states = model.getStates();
+        this.values = compact ? null : new double[states];
+        this.floatValues = compact ? new float[states] : null;
         this.complexity = 0;
-        this.policyLandscape = Calculate();
+        this.backups = 0;
+        clearChanges();
+        Calculate();
+        finish();
+    }
+
+    /**
+     * Makes the policy out of the calculated values and hands the values to the mdp for displaying.
+     * In compact mode the values are not copied into a two-dimensional landscape.
+     * A general model has no grid, so nothing is made for it.
+     */
+    private void finish() {
+        if (mdp == null) {
+            return;
+        }
+        this.policy = createPolicy();
+        this.valueLandscape = compact ? null : createValueLandscape();
         mdp.setValueLandscape(valueLandscape);
     }
 
+    /**
+     * Starts listening to the mdp, so update() knows which fields changed. Changes made before are not known,
+     * so the first update() after watching solves everything again unless solve() is called after watch().
+     * A general model has nothing to watch.
+     */
+    public void watch() {
+        if (mdp == null || watching) {
+            return;
+        }
+        mdp.addLandscapeListener(this);
+        watching = true;
+        modelChanged();
+    }
+
+    /**
+     * Stops listening to the mdp and forgets the changed fields. The values and policy stay available.
+     */
+    @Override
+    public void close() {
+        if (!watching) {
+            return;
+        }
+        mdp.removeLandscapeListener(this);
+        watching = false;
+        modelChanged();
+    }
+
+    /**
+     * Re-solves after the mdp changed, starting from the values of the previous solve.
+     * Only the changed fields and their neighbours (whose moves may now be blocked or free) are queued,
+     * prioritized sweeping then propagates the changes outward as far as they matter.
+     * The threshold of the propagation is the set epsilon, so without an epsilon, or when the rewards, probabilities,
+     * whole landscape or many fields changed, everything is solved again instead. So is a general model,
+     * and a value iteration that is not watching the mdp, since it does not know what changed.
+     */
+    public void update() {
+        if (mdp == null || table == null || mdp.getWidth() != table.getWidth() || mdp.getHeight() != table.getHeight()
+            || compact != (floatValues != null) || !watching || modelChanged || getThreshold() <= 0) {
+            solve();
+            return;
+        }
+        this.complexity = 0;
+        this.backups = 0;
+        // the neighbours of a changed field may now have a blocked or free move, so their rows change too
+        int changedFields = changedCount;
+        for (int i = 0; i < changedFields; i++) {
+            int s = changedStates[i];
+            for (int e = table.getPredecessorStart(s); e < table.getPredecessorStart(s + 1); e++) {
+                markChanged(table.getPredecessor(e));
+            }
+        }
+        Arrays.sort(changedStates, 0, changedCount);
+        table.update(mdp, changedStates, changedCount);
+        if (updateQueue == null) {
+            updateQueue = new StatePriorityQueue(states);
+            touched = new boolean[states];
+            touchedStates = new int[16];
+        }
+        for (int i = 0; i < changedCount; i++) {
+            updateQueue.raise(changedStates[i], Double.POSITIVE_INFINITY);
+        }
+        clearChanges();
+        sweepPrioritized(updateQueue, getThreshold(), true);
+        finishUpdate();
+    }
+
+    /**
+     * Remembers a state whose rows have to be compiled again, once.
+     */
+    private void markChanged(int state) {
+        if (changed[state]) {
+            return;
+        }
+        if (changedCount == changedStates.length) {
+            changedStates = Arrays.copyOf(changedStates, changedCount * 2);
+        }
+        changed[state] = true;
+        changedStates[changedCount++] = state;
+    }
+
+    /**
+     * Remembers a state backed up by the running update, once.
+     */
+    private void markTouched(int state) {
+        if (touched[state]) {
+            return;
+        }
+        if (touchedCount == touchedStates.length) {
+            touchedStates = Arrays.copyOf(touchedStates, touchedCount * 2);
+        }
+        touched[state] = true;
+        touchedStates[touchedCount++] = state;
+    }
+
+    /**
+     * Brings the policy and the displayed values up to date after an update, for just the backed up states:
+     * only their values changed, so only their own best actions and those of their predecessors can have changed.
+     */
+    private void finishUpdate() {
+        for (int i = 0; i < touchedCount; i++) {
+            int s = touchedStates[i];
+            touched[s] = false;
+            updatePolicy(s);
+            for (int e = table.getPredecessorStart(s); e < table.getPredecessorStart(s + 1); e++) {
+                updatePolicy(table.getPredecessor(e));
+            }
+            if (valueLandscape != null) {
+                valueLandscape[table.getX(s)][table.getY(s)] = values[s];
+            }
+        }
+        touchedCount = 0;
+        mdp.setValueLandscape(valueLandscape);
+    }
+
+    /**
+     * Sets the best action of a state in the policy from the current values.
+     */
+    private void updatePolicy(int state) {
+        Action action = compact ? table.bestAction(floatValues, state, discount) : table.bestAction(values, state, discount);
+        policy[state] = action == null ? -1 : (byte) action.ordinal();
+    }
+
+    /**
+     * Forgets the changed fields, after they were solved.
+     */
+    private void clearChanges() {
+        if (changed != null) {
+            for (int i = 0; i < changedCount; i++) {
+                changed[changedStates[i]] = false;
+            }
+        }
+        changedCount = 0;
+        modelChanged = false;
+    }
+
+    /**
+     * Remembers the changed field for the next update(), once however often it changes.
+     * When too many fields changed it is cheaper to solve everything again, so the list is dropped.
+     */
+    @Override
+    public void fieldChanged(int xpos, int ypos) {
+        if (modelChanged) {
+            return;
+        }
+        int state = ypos * mdp.getWidth() + xpos;
+        if (changed == null || changed.length != mdp.getWidth() * mdp.getHeight()) {
+            changed = new boolean[mdp.getWidth() * mdp.getHeight()];
+            changedCount = 0;
+        }
+        if (changed[state]) {
+            return;
+        }
+        if (changedCount >= changed.length / MAX_CHANGED_SHARE) {
+            modelChanged();
+            return;
+        }
+        if (changedCount == changedStates.length) {
+            changedStates = Arrays.copyOf(changedStates, changedCount * 2);
+        }
+        changed[state] = true;
+        changedStates[changedCount++] = state;
+    }
+
+    /**
+     * Remembers that every state has to be checked by the next update(), and drops the list of changed fields.
+     */
+    @Override
+    public void modelChanged() {
+        modelChanged = true;
+        changedCount = 0;
+        changed = null;
+        changedStates = new int[16];
+    }
+
     /**
      * Begins the algorithm and calculated the values for the whole grid world.
-     * After values have been calculated, optimal policy map is made.
+     * Sweeps until the maximum amount of iterations is reached or, if an epsilon is set,
+     * until the largest change of a value in a sweep (Bellman residual) drops below the threshold.
+     * With a parallelism above 1 the sweeps are synchronous (Jacobi) and split over ranges of states,
+     * otherwise the states are backed up in place in the set sweep order.
+     */
+    private void Calculate() {
+        if (parallelism > 1) {
+            calculateParallel();
+            return;
+        }
+        if (sweepOrder == SweepOrder.PRIORITIZED) {
+            calculatePrioritized();
+            return;
+        }
+        double threshold = getThreshold();
+        sweeps = 0;
+        residual = Double.POSITIVE_INFINITY;
+        while (sweeps < iterations) {
+            residual = 0;
+            if (sweepOrder == SweepOrder.ALTERNATING && sweeps % 2 == 1) {
+                for (int s = states - 1; s >= 0; s--) {
+                    residual = Math.max(residual, V(s));
+                }
+            } else {
+                for (int s = 0; s < states; s++) {
+                    residual = Math.max(residual, V(s));
+                }
+            }
+            sweeps++;
+            backups += states;
+            if (residual < threshold) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Prioritized sweeping. Always backs up the state with the largest Bellman error,
+     * after which the errors of the states leading to it are calculated again and queued.
+     * Stops when no error is above the threshold or after as many backups as the maximum amount of sweeps would make.
+     */
+    private void calculatePrioritized() {
+        double threshold = Math.max(getThreshold(), Double.MIN_NORMAL);
+        StatePriorityQueue queue = new StatePriorityQueue(states);
+        for (int s = 0; s < states; s++) {
+            double error = getError(s);
+            if (error >= threshold) {
+                queue.raise(s, error);
+            }
+        }
+        sweepPrioritized(queue, threshold, false);
+    }
+
+    /**
+     * Backs up the queued states in order of priority, queueing the predecessors of every backed up state
+     * whose Bellman error is above the threshold. The backed up state itself is checked again too, since with a chance
+     * of staying in place (a blocked move or no step) its own backup changes its own Bellman error.
+     * The residual is the largest Bellman error left afterwards, found by checking every state once more.
      *
-     * @return two-dimensional array containing the policy action for each state of the grid world.
+     * An incremental sweep (of update) does not check every state: the states it did not check kept their error
+     * of the previous solve, and every state it did check last had an error below the threshold, so the residual is
+     * at most the larger of the previous residual and the largest of those errors. Only when it is cut off by the
+     * maximum amount of backups every state is checked. It also remembers the states it backed up.
+     *
+     * @param queue the states to start with, empty afterwards.
+     * @param threshold the Bellman error below which a state is not queued.
+     * @param incremental whether the sweep is part of an update.
      */
-    private Action[][] Calculate() {
-        Action[][] policyLandscape = new Action[mdp.getWidth()][mdp.getHeight()];
-        for (int k = 0; k < iterations; k++) {
-            for (int i = 0; i < mdp.getWidth(); i++) {
-                for (int j = 0; j < mdp.getHeight(); j++) {
-                    V(i, j);
+    private void sweepPrioritized(StatePriorityQueue queue, double threshold, boolean incremental) {
+        long maxBackups = (long) iterations * states;
+        double checked = 0;
+        while (!queue.isEmpty() && backups < maxBackups) {
+            int state = queue.poll();
+            V(state);
+            backups++;
+            if (incremental) {
+                markTouched(state);
+            }
+            double own = getError(state);
+            if (own >= threshold) {
+                queue.raise(state, own);
+            } else {
+                checked = Math.max(checked, own);
+            }
+            for (int e = model.getPredecessorStart(state); e < model.getPredecessorStart(state + 1); e++) {
+                int predecessor = model.getPredecessor(e);
+                double error = getError(predecessor);
+                if (error >= threshold) {
+                    queue.raise(predecessor, error);
+                } else {
+                    checked = Math.max(checked, error);
                 }
             }
         }
-        for (int xpos = 0; xpos < mdp.getWidth(); xpos++) {
-            for (int ypos = 0; ypos < mdp.getHeight(); ypos++) {
-                Action[] moves = getPossibleActions(xpos, ypos);
-                double[] values = new double[moves.length];
-                for (int a = 0; a < moves.length; a++) {
-                    switch (moves[a]) {
-                        case UP:
-                            if (ypos < (mdp.getHeight() - 1)) {
-                                values[a] = valueLandscape[xpos][ypos + 1];
-                            } else {
-                                // out of range
-                                values[a] = -1;
-                            }
-                            break;
-                        case DOWN:
-                            if (ypos > 0) {
-                                values[a] = valueLandscape[xpos][ypos - 1];
-                            } else {
-                                // out of range
-                                values[a] = -1;
-                            }
-                            break;
-                        case LEFT:
-                            if (xpos > 0) {
-                                values[a] = valueLandscape[xpos - 1][ypos];
-                            } else {
-                                // out of range
-                                values[a] = -1;
-                            }
-                            break;
-                        case RIGHT:
-                            if (xpos < mdp.getWidth() - 1) {
-                                values[a] = valueLandscape[xpos + 1][ypos];
-                            } else {
-                                // out of range
-                                values[a] = -1;
-                            }
-                            break;
-                    }
+        if (incremental && queue.isEmpty()) {
+            residual = Math.max(residual, checked);
+        } else {
+            queue.clear();
+            residual = 0;
+            for (int s = 0; s < states; s++) {
+                residual = Math.max(residual, getError(s));
+            }
+        }
+        sweeps = (int) ((backups + states - 1) / states);
+    }
+
+    /**
+     * Calculates the Bellman error of a state, i.e. how much its value would change when backed up.
+     *
+     * @param state index of the state in the transition table.
+     * @return the absolute change a backup would make.
+     */
+    private double getError(int state) {
+        complexity += model.getActionStart(state + 1) - model.getActionStart(state);
+        return Math.abs(backup(state) - getValue(state));
+    }
+
+    /**
+     * Calculates the Bellman backup of a state from the current values, whichever storage is used.
+     */
+    private double backup(int state) {
+        return compact ? model.backup(floatValues, state, discount) : model.backup(values, state, discount);
+    }
+
+    /**
+     * Gets the calculated value of a state, whichever storage is used.
+     *
+     * @param state index of the state in the model.
+     * @return the value of the state.
+     */
+    public double getValue(int state) {
+        return compact ? floatValues[state] : values[state];
+    }
+
+    /**
+     * Gets the best action of a state according to the calculated values.
+     *
+     * @param state index of the state in the model.
+     * @return the action of the most valuable action row (an Action ordinal for grid worlds), -1 if the state has none.
+     */
+    public int getBestAction(int state) {
+        int row = compact ? model.bestRow(floatValues, state, discount) : model.bestRow(values, state, discount);
+        return row < 0 ? -1 : model.getActionId(row);
+    }
+
+    /**
+     * Getter for the model that is solved, for grid worlds the transition table of the last solve.
+     */
+    public TabularMDP getModel() {
+        return model;
+    }
+
+    /**
+     * Synchronous sweeps on a fork join pool. Every sweep reads the values of the previous sweep
+     * and writes into a second array, so the states can be backed up independently of each other.
+     */
+    private void calculateParallel() {
+        double threshold = getThreshold();
+        double[] next = compact ? null : new double[states];
+        float[] floatNext = compact ? new float[states] : null;
+        int statesPerTask = Math.max(1024, states / (parallelism * 4));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            sweeps = 0;
+            residual = Double.POSITIVE_INFINITY;
+            while (sweeps < iterations) {
+                residual = pool.invoke(new SweepTask(values, next, floatValues, floatNext, 0, states, statesPerTask));
+                double[] swap = values;
+                values = next;
+                next = swap;
+                float[] floatSwap = floatValues;
+                floatValues = floatNext;
+                floatNext = floatSwap;
+                sweeps++;
+                backups += states;
+                complexity += model.getRows();
+                if (residual < threshold) {
+                    break;
                 }
-                int index = Utilities.getHighestIndex(values);
-                if (moves.length != 0) {
-                    // no policy for obstacles
-                    policyLandscape[xpos][ypos] = moves[index];
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Backs up a range of states from one value array into another.
+     * Uses the float arrays in compact mode and the double arrays otherwise.
+     * Splits itself in halves until the range is small enough.
+     */
+    private class SweepTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+        private final double[] current;
+        private final double[] next;
+        private final float[] floatCurrent;
+        private final float[] floatNext;
+        private final int fromState;
+        private final int toState;
+        private final int statesPerTask;
+
+        SweepTask(double[] current, double[] next, float[] floatCurrent, float[] floatNext, int fromState, int toState,
+                  int statesPerTask) {
+            this.current = current;
+            this.next = next;
+            this.floatCurrent = floatCurrent;
+            this.floatNext = floatNext;
+            this.fromState = fromState;
+            this.toState = toState;
+            this.statesPerTask = statesPerTask;
+        }
+
+        @Override
+        protected Double compute() {
+            if (toState - fromState > statesPerTask) {
+                int middle = (fromState + toState) >>> 1;
+                SweepTask lower = new SweepTask(current, next, floatCurrent, floatNext, fromState, middle, statesPerTask);
+                lower.fork();
+                double upper = new SweepTask(current, next, floatCurrent, floatNext, middle, toState, statesPerTask).compute();
+                return Math.max(upper, lower.join());
+            }
+            double change = 0;
+            if (floatCurrent != null) {
+                for (int s = fromState; s < toState; s++) {
+                    floatNext[s] = (float) model.backup(floatCurrent, s, discount);
+                    change = Math.max(change, Math.abs(floatNext[s] - floatCurrent[s]));
                 }
+                return change;
             }
+            for (int s = fromState; s < toState; s++) {
+                next[s] = model.backup(current, s, discount);
+                change = Math.max(change, Math.abs(next[s] - current[s]));
+            }
+            return change;
         }
-        return policyLandscape;
     }
 
     /**
@@ -107,96 +560,65 @@ public class ValueIteration {
      * Considers all possible actions in the state and for each find the value.
      * From all values takes the highest valued action and sets it as the value of the state.
      *
-     * @param xpos X coordinate of the state in the grid world.
-     * @param ypos Y coordinate of the state in the grid world.
+     * @param state index of the state in the transition table.
+     * @return the absolute change of the value of the state.
      */
-    private void V(int xpos, int ypos) {
-        Action[] moves = getPossibleActions(xpos, ypos);
-        double[] values = new double[moves.length];
-        for (int i = 0; i < moves.length; i++) {
-            values[i] = QValue(xpos, ypos, moves[i]);
+    private double V(int state) {
+        complexity += model.getActionStart(state + 1) - model.getActionStart(state);
+        double value = backup(state);
+        if (compact) {
+            float stored = (float) value;
+            double change = Math.abs(stored - floatValues[state]);
+            floatValues[state] = stored;
+            return change;
         }
-        valueLandscape[xpos][ypos] = Utilities.max(values);
+        double change = Math.abs(value - values[state]);
+        values[state] = value;
+        return change;
     }
 
     /**
-     * Takes non-determinism into account and calculates the value of the action in a given state.
+     * Getter for the residual below which the sweeps stop.
+     * With the bounded epsilon the residual is scaled by (1 - discount) / discount,
+     * which guarantees the values are within epsilon of the optimal values.
      *
-     * @param xpos X coordinate of the state in the grid world.
-     * @param ypos Y coordinate of the state in the grid world.
-     * @param action The action for which the value needs to be calculated.
-     * @return the value of the action given that it was executed in given state coordinates.
-     */
-    private double QValue(int xpos, int ypos, Action action) {
-        double expectedValue = 0;
-        Action[] actions = new Action[]{action, Action.previousAction(action), Action.nextAction(action), Action.backAction(action),
-            Action.NOTHING};
-        for (int i = 0; i < actions.length; i++) {
-            Action act = actions[i];
-            switch (act) {
-                case UP:
-                    if (ypos < (mdp.getHeight() - 1) && mdp.getField(xpos, ypos + 1) != Field.OBSTACLE) {
-                        expectedValue += probDistribution[i] * valueLandscape[xpos][ypos + 1];
-                    } else if (ypos > (mdp.getHeight() - 1)) {
-                        // if out of range
-                        expectedValue += probDistribution[i] * -1;
-                    }
-                    break;
-                case DOWN:
-                    if (ypos > 0 && mdp.getField(xpos, ypos - 1) != Field.OBSTACLE) {
-                        expectedValue += probDistribution[i] * valueLandscape[xpos][ypos - 1];
-                    } else if (ypos - 1 < 0) {
-                        // if out of range
-                        expectedValue += probDistribution[i] * -1;
-                    }
-                    break;
-                case LEFT:
-                    if (xpos > 0 && mdp.getField(xpos - 1, ypos) != Field.OBSTACLE) {
-                        expectedValue += probDistribution[i] * valueLandscape[xpos - 1][ypos];
-                    } else if (xpos - 1 < 0) {
-                        // if out of range
-                        expectedValue += probDistribution[i] * -1;
-                    }
-                    break;
-                case RIGHT:
-                    if (xpos < mdp.getWidth() - 1 && mdp.getField(xpos + 1, ypos) != Field.OBSTACLE) {
-                        expectedValue += probDistribution[i] * valueLandscape[xpos + 1][ypos];
-                        break;
-                    } else if (xpos > mdp.getWidth() - 1) {
-                        // if out of range
-                        expectedValue += probDistribution[i] * -1;
-                    }
-                default:
-                    expectedValue += probDistribution[i] * valueLandscape[xpos][ypos];
-                    break;
-            }
-            complexity++;
+     * @return the stopping threshold, 0 when no epsilon is set (i.e. always run all iterations).
+     */
+    private double getThreshold() {
+        if (epsilon <= 0) {
+            return 0;
+        }
+        if (boundedEpsilon && discount < 1) {
+            return epsilon * (1 - discount) / discount;
         }
-        double reward = rewardLandscape[xpos][ypos];
-        return reward + (expectedValue * discount);
+        return epsilon;
     }
 
     /**
-     * Initialises the reward map.
+     * Makes the optimal policy out of the calculated values.
      *
-     * @return two-dimensional array with preset rewards of the grid world.
+     * @return the Action ordinal for each state of the grid world, -1 for obstacles and end states.
      */
-    private double[][] createRewardLandscape() {
-        double[][] rewardLandscape = new double[mdp.getWidth()][mdp.getHeight()];
-        for (int i = 0; i < mdp.getWidth(); i++) {
-            for (int j = 0; j < mdp.getHeight(); j++) {
-                Field field = mdp.getField(i, j);
-                if (field == Field.REWARD) {
-                    rewardLandscape[i][j] = mdp.getPosReward();
-                } else if (field == Field.EMPTY) {
-                    rewardLandscape[i][j] = mdp.getNoReward();
-                } else if (field == Field.NEGREWARD) {
-                    rewardLandscape[i][j] = mdp.getNegReward();
-                }
-                // otherwise its an obstacle, keeps 0
-            }
+    private byte[] createPolicy() {
+        byte[] policy = new byte[states];
+        for (int s = 0; s < states; s++) {
+            Action action = compact ? table.bestAction(floatValues, s, discount) : table.bestAction(values, s, discount);
+            policy[s] = action == null ? -1 : (byte) action.ordinal();
+        }
+        return policy;
+    }
+
+    /**
+     * Copies the calculated values into the two-dimensional landscape used for displaying.
+     *
+     * @return two-dimensional array with the value of each state of the grid world.
+     */
+    private double[][] createValueLandscape() {
+        double[][] valueLandscape = new double[mdp.getWidth()][mdp.getHeight()];
+        for (int s = 0; s < states; s++) {
+            valueLandscape[table.getX(s)][table.getY(s)] = values[s];
         }
-        return rewardLandscape;
+        return valueLandscape;
     }
 
     /**
@@ -223,14 +645,43 @@ public class ValueIteration {
         return actions.toArray(new Action[actions.size()]);
     }
 
+    /**
+     * Getter for the index of a state of the grid world.
+     *
+     * @throws IllegalStateException if a general model is solved, which has no grid, or nothing is solved yet.
+     */
+    private int getIndex(int xpos, int ypos) {
+        if (mdp == null) {
+            throw new IllegalStateException("A general model has no grid, use getValue(state) and getBestAction(state)");
+        }
+        if (table == null) {
+            throw new IllegalStateException("Nothing is solved yet, call solve() first");
+        }
+        return table.getIndex(xpos, ypos);
+    }
+
     /**
      * Gets the action according to the pre-calculated policy.
      * @param xpos X coordinate of the state in the grid world.
      * @param ypos Y coordinate of the state in the grid world.
      * @return the most valuable action in the state.
      */
+    @Override
     public Action getAction(int xpos, int ypos) {
-        return policyLandscape[xpos][ypos];
+        byte action = policy[getIndex(xpos, ypos)];
+        return action < 0 ? null : ACTIONS[action];
+    }
+
+    /**
+     * Gets the calculated value of a state.
+     *
+     * @param xpos X coordinate of the state in the grid world.
+     * @param ypos Y coordinate of the state in the grid world.
+     * @return the value of the state.
+     */
+    @Override
+    public double getValue(int xpos, int ypos) {
+        return getValue(getIndex(xpos, ypos));
     }
 
     /**
@@ -239,4 +690,108 @@ public class ValueIteration {
     public void printComplexity() {
         System.out.println(complexity);
     }
+
+    /**
+     * Prints the amount of sweeps made and the final Bellman residual to the console.
+     */
+    public void printConvergence() {
+        System.out.println("sweeps: " + sweeps + ", backups: " + backups + ", residual: " + residual);
+    }
+
+    /**
+     * Getter for the amount of sweeps made over the grid world by the last solve.
+     *
+     * @return integer of sweeps.
+     */
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * Getter for the amount of state backups made by the last solve.
+     *
+     * @return long of backups.
+     */
+    public long getBackups() {
+        return backups;
+    }
+
+    /**
+     * Getter for the largest change of a value in the last sweep.
+     * After a prioritized solve the largest Bellman error left, after an update() a bound on it.
+     *
+     * @return double of the Bellman residual.
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Setter for the maximum amount of sweeps over the grid world.
+     *
+     * @param iterations new integer of maximum sweeps.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Setter for the convergence epsilon. The sweeps stop as soon as the Bellman residual drops below it.
+     *
+     * @param epsilon the allowed residual, 0 or less always runs all iterations.
+     * @param bounded if true the residual is scaled by (1 - discount) / discount so the values end up within epsilon of optimal.
+     */
+    public void setEpsilon(double epsilon, boolean bounded) {
+        this.epsilon = epsilon;
+        this.boundedEpsilon = bounded;
+    }
+
+    /**
+     * Setter for the compact storage mode. When compact the values are kept as floats
+     * and not copied into a two-dimensional landscape for the display, which roughly halves the memory per state.
+     * Takes effect on the next solve().
+     *
+     * @param compact whether to use the compact storage.
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Setter for the order in which the states are backed up. Only used when the parallelism is 1.
+     *
+     * @param sweepOrder new order of the backups.
+     */
+    public void setSweepOrder(SweepOrder sweepOrder) {
+        this.sweepOrder = sweepOrder;
+    }
+
+    /**
+     * Setter for the amount of threads sweeping the grid world.
+     * Above 1 the sweeps become synchronous (Jacobi) instead of in place, which may take a few more sweeps.
+     *
+     * @param parallelism new integer of threads, 1 for the single threaded in place sweeps.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Setter for the discount factor.
+     *
+     * @param discount new double of discount.
+     */
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Getter for the discount factor.
+     *
+     * @return double of discount.
+     */
+    @Override
+    public double getDiscount() {
+        return discount;
+    }
 }
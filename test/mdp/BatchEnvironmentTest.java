@@ -0,0 +1,33 @@
+package mdp;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of the random streams of BatchEnvironment.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class BatchEnvironmentTest {
+
+    @Test
+    public void agentsDoNotDependOnTheBatchSize() {
+        MarkovDecisionProblem mdp = new MapGenerator(2).generate(20, 20, true);
+        BatchEnvironment small = new BatchEnvironment(mdp, 3, 42);
+        BatchEnvironment large = new BatchEnvironment(mdp, 8, 42);
+        byte[] smallActions = new byte[3];
+        byte[] largeActions = new byte[8];
+        for (int step = 0; step < 500; step++) {
+            for (int i = 0; i < largeActions.length; i++) {
+                largeActions[i] = (byte) ((step + i) % 4);
+            }
+            System.arraycopy(largeActions, 0, smallActions, 0, smallActions.length);
+            small.step(smallActions);
+            large.step(largeActions);
+            int[] first = new int[3];
+            System.arraycopy(large.getStates(), 0, first, 0, first.length);
+            assertArrayEquals(small.getStates(), first);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of ExactPolicyEvaluation against converged value iteration.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class ExactPolicyEvaluationTest {
+
+    @Test
+    public void optimalPolicyHasTheValuesOfValueIteration() {
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(10, 10, true);
+        Main.createDavidsMap(mdp);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setIterations(100000);
+        vi.setEpsilon(1e-13, false);
+        vi.solve();
+        ExactPolicyEvaluation exact = new ExactPolicyEvaluation(mdp, vi, vi.getDiscount());
+        assertTrue(exact.getResidual() < 1e-9);
+        for (int x = 0; x < mdp.getWidth(); x++) {
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                assertEquals(vi.getValue(x, y), exact.getValue(x, y), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void missingActionKeepsTheAgentInPlace() {
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(true);
+        ExactPolicyEvaluation exact = new ExactPolicyEvaluation(mdp, (x, y) -> null, 0.5);
+        // staying forever in an empty field: r / (1 - discount)
+        assertEquals(mdp.getNoReward() / 0.5, exact.getValue(0, 0), 1e-9);
+        assertEquals(mdp.getPosReward(), exact.getValue(3, 2), 0);
+    }
+
+    @Test
+    public void blockedMovesCanStillSlip() {
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(true);
+        Policy up = (x, y) -> Action.UP;    // bumps into the top wall and the obstacle
+        for (double discount : new double[]{0.9, 1}) {
+            ExactPolicyEvaluation exact = new ExactPolicyEvaluation(mdp, up, discount);
+            assertTrue(exact.getResidual() < 1e-9);
+            PolicyEvaluator evaluator = new PolicyEvaluator(mdp);
+            evaluator.setDiscount(discount);
+            evaluator.setStart(0, 2);
+            evaluator.setSeed(1);
+            evaluator.setEpisodes(100000, 100000);
+            evaluator.evaluate(up);
+            // the simulated return starts with the reward of the next field, the exact value with that of the state itself
+            double expected = mdp.getNoReward() + discount * evaluator.getMean();
+            assertEquals(expected, exact.getValue(0, 2), 4 * discount * evaluator.getConfidenceHalfWidth());
+        }
+    }
+}
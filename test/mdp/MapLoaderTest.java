@@ -0,0 +1,80 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of reading and writing text maps with MapLoader.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MapLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a text map to a new file.
+     */
+    private Path write(String map) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, map.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /**
+     * Checks that reading the given map fails with a message containing the given text.
+     */
+    private void assertRejected(String map, String message) throws IOException {
+        Path file = write(map);
+        try {
+            MapLoader.readAscii(file, true);
+            fail("read an invalid map");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        MarkovDecisionProblem mdp = new MapGenerator(7).generate(23, 17, true);
+        Path file = folder.newFile().toPath();
+        MapLoader.writeAscii(mdp, file);
+        MarkovDecisionProblem read = MapLoader.readAscii(file, true);
+        assertEquals(mdp.getInitialXPosition(), read.getInitialXPosition());
+        assertEquals(mdp.getInitialYPosition(), read.getInitialYPosition());
+        for (int y = 0; y < mdp.getHeight(); y++) {
+            for (int x = 0; x < mdp.getWidth(); x++) {
+                assertEquals(mdp.getField(x, y), read.getField(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void startsAtTheOriginWithoutStart() throws IOException {
+        MarkovDecisionProblem mdp = MapLoader.readAscii(write("3 2\n..+\n.#-\n"), true);
+        assertEquals(0, mdp.getStateXPosition());
+        assertEquals(0, mdp.getStateYPostion());
+    }
+
+    @Test
+    public void rejectsBlockedDefaultStart() throws IOException {
+        assertRejected("3 2\n..+\n##.\n", "no start");
+        assertRejected("3 2\n..+\n-..\n", "no start");
+    }
+
+    @Test
+    public void rejectsMapWithoutEndState() throws IOException {
+        assertRejected("3 2\n...\nS#.\n", "no end state");
+    }
+}
@@ -0,0 +1,77 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the memory-mapped landscape and value iteration.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class MappedValueIterationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void openDoesNotCreateMissingFiles() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("missing.map");
+        try {
+            MappedLandscape.open(file);
+            fail("a missing file was opened");
+        } catch (NoSuchFileException e) {
+            assertFalse(file.toFile().exists());
+        }
+    }
+
+    @Test
+    public void fillSetsExactlyTheRange() throws IOException {
+        try (MappedArray array = new MappedArray(folder.newFile().toPath(), 200000)) {
+            array.fill(3, 199990, (byte) 7);
+            assertEquals(0, array.getByte(2));
+            assertEquals(7, array.getByte(3));
+            assertEquals(7, array.getByte(100000));
+            assertEquals(7, array.getByte(199989));
+            assertEquals(0, array.getByte(199990));
+        }
+    }
+
+    @Test
+    public void freshPolicyHasNoActions() throws IOException {
+        Path root = folder.getRoot().toPath();
+        try (MappedLandscape landscape = MappedLandscape.create(root.resolve("grid.map"), 5, 4);
+             MappedValueIteration vi = new MappedValueIteration(landscape, root.resolve("values"), root.resolve("policy"))) {
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 5; x++) {
+                    assertNull(vi.getAction(x, y));
+                    assertEquals(0, vi.getValue(x, y), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reopenedLandscapeKeepsItsFields() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("grid.map");
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(true);
+        MappedLandscape.of(mdp, file).close();
+        try (MappedLandscape landscape = MappedLandscape.open(file)) {
+            assertEquals(mdp.getWidth(), landscape.getWidth());
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                for (int x = 0; x < mdp.getWidth(); x++) {
+                    assertEquals(mdp.getField(x, y), landscape.getField(x, y));
+                }
+            }
+        }
+    }
+}
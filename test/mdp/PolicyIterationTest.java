@@ -0,0 +1,31 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of PolicyIteration against converged value iteration.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class PolicyIterationTest {
+
+    @Test
+    public void valuesMatchValueIteration() {
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(10, 10, true);
+        Main.createMantasMap(mdp);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setIterations(100000);
+        vi.setEpsilon(1e-13, false);
+        vi.solve();
+        PolicyIteration pi = new PolicyIteration(mdp, false);
+        pi.setEpsilon(1e-12);
+        pi.solve();
+        for (int x = 0; x < mdp.getWidth(); x++) {
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                assertEquals(vi.getValue(x, y), pi.getValue(x, y), 1e-8);
+            }
+        }
+    }
+}
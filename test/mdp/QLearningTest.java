@@ -0,0 +1,33 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of the bookkeeping of QLearning.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class QLearningTest {
+
+    @Test
+    public void parallelCountsEveryWorker() {
+        QLearning learner = new QLearning(new MarkovDecisionProblem(true));
+        learner.setSeed(1);
+        learner.learn(100L);
+        learner.learnParallel(3, 1000, 1);
+        assertEquals(3100, learner.getSteps());
+        assertEquals(3100, learner.getTotalActionsMade());
+    }
+
+    @Test
+    public void metCriterionTakesNoStep() {
+        QLearning learner = new QLearning(new MarkovDecisionProblem(true));
+        learner.setSeed(1);
+        learner.learn(StoppingCriteria.maxSteps(0));
+        assertEquals(0, learner.getSteps());
+        learner.learn(StoppingCriteria.maxSteps(25));
+        assertEquals(25, learner.getSteps());
+    }
+}
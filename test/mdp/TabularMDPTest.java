@@ -0,0 +1,202 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests of TabularMDP and the solvers on general models.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class TabularMDPTest {
+
+    private static final int SIZE = 12;
+    private static final double DISCOUNT = 0.99;
+
+    /**
+     * An 8-connected grid with strong wind: most moves keep the agent in place, and one field teleports.
+     * The goal in the far corner is worth 1, every move costs 0.04.
+     */
+    private static TabularMDP createWindyModel() {
+        int states = SIZE * SIZE;
+        TabularMDP.Builder builder = new TabularMDP.Builder(states);
+        builder.setReward(states - 1, 1);
+        for (int s = 0; s < states - 1; s++) {
+            int x = s % SIZE;
+            int y = s / SIZE;
+            int id = 0;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx == 0 && dy == 0) {
+                        continue;
+                    }
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    id++;
+                    if (nx < 0 || ny < 0 || nx >= SIZE || ny >= SIZE) {
+                        continue;
+                    }
+                    builder.addAction(s, id);
+                    if (s == SIZE + 1) {
+                        builder.addTransition(states - 2, 0.3, -0.04);
+                        builder.addTransition(s, 0.7, -0.04);
+                    } else {
+                        builder.addTransition(ny * SIZE + nx, 0.15, -0.04);
+                        builder.addTransition(s, 0.85, -0.04);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Solves the model with the given order, epsilon and discount.
+     */
+    private static ValueIteration solve(TabularMDP model, SweepOrder order, double epsilon) {
+        ValueIteration vi = new ValueIteration(model, false);
+        vi.setDiscount(DISCOUNT);
+        vi.setIterations(1000000);
+        vi.setEpsilon(epsilon, false);
+        vi.setSweepOrder(order);
+        vi.solve();
+        return vi;
+    }
+
+    @Test
+    public void prioritizedHandlesSelfLoops() {
+        TabularMDP model = createWindyModel();
+        ValueIteration reference = solve(model, SweepOrder.FORWARD, 1e-13);
+        ValueIteration prioritized = solve(model, SweepOrder.PRIORITIZED, 1e-7);
+        double bound = prioritized.getResidual() / (1 - DISCOUNT) + 1e-12;
+        assertTrue(prioritized.getResidual() < 1e-7);
+        for (int s = 0; s < model.getStates(); s++) {
+            assertEquals("state " + s, reference.getValue(s), prioritized.getValue(s), bound);
+        }
+    }
+
+    @Test
+    public void solversAgreeOnGeneralModel() {
+        TabularMDP model = createWindyModel();
+        ValueIteration vi = solve(model, SweepOrder.FORWARD, 1e-13);
+        PolicyIteration pi = new PolicyIteration(model, false);
+        pi.setDiscount(DISCOUNT);
+        pi.setEpsilon(1e-12);
+        pi.solve();
+        int[] policy = new int[model.getStates()];
+        for (int s = 0; s < policy.length; s++) {
+            policy[s] = vi.getBestAction(s);
+            assertEquals(vi.getValue(s), pi.getValue(s), 1e-8);
+        }
+        ExactPolicyEvaluation exact = new ExactPolicyEvaluation(model, policy, DISCOUNT, true);
+        for (int s = 0; s < policy.length; s++) {
+            assertEquals(vi.getValue(s), exact.getValue(s), 1e-8);
+        }
+        assertEquals(-1, vi.getBestAction(model.getStates() - 1));
+        assertEquals(1, vi.getValue(model.getStates() - 1), 0);
+    }
+
+    @Test
+    public void builderMergesTransitionsToTheSameState() {
+        TabularMDP.Builder builder = new TabularMDP.Builder(2);
+        builder.addAction(0, 7);
+        builder.addTransition(1, 0.25, 4);
+        builder.addTransition(1, 0.75, 0);
+        builder.addTransition(0, 0, 0);
+        TabularMDP model = builder.build();
+        assertEquals(1, model.getRows());
+        assertEquals(7, model.getActionId(0));
+        assertEquals(1, model.getProbability(model.getSuccessorStart(0)), 0);
+        assertEquals(1, model.getRowReward(0), 1e-15);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsProbabilitiesNotAddingUpToOne() {
+        TabularMDP.Builder builder = new TabularMDP.Builder(2);
+        builder.addAction(0, 0);
+        builder.addTransition(1, 0.5, 0);
+        builder.build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTheSameActionTwice() {
+        TabularMDP.Builder builder = new TabularMDP.Builder(2);
+        builder.addAction(0, 3);
+        builder.addTransition(1, 1, 0);
+        builder.addAction(0, 3);
+        builder.addTransition(0, 1, 0);
+        builder.build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void generalModelHasNoGrid() {
+        solve(createWindyModel(), SweepOrder.FORWARD, 1e-6).getValue(0, 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void generalPolicyHasNoGrid() {
+        new ExactPolicyEvaluation(createWindyModel(), new int[SIZE * SIZE], DISCOUNT, false).getAction(0, 0);
+    }
+
+    @Test
+    public void patchedTableMatchesCompiledTable() {
+        MarkovDecisionProblem mdp = new MapGenerator(5).generate(17, 13, true);
+        TransitionTable table = new TransitionTable(mdp);
+        SplittableRandom rand = new SplittableRandom(5);
+        Field[] fields = new Field[]{Field.EMPTY, Field.EMPTY, Field.OBSTACLE, Field.REWARD, Field.NEGREWARD};
+        for (int round = 0; round < 50; round++) {
+            // a few fields changed, then the changed fields and their neighbours are compiled again
+            boolean[] dirty = new boolean[mdp.getWidth() * mdp.getHeight()];
+            int changes = 1 + rand.nextInt(6);
+            for (int i = 0; i < changes; i++) {
+                int x = rand.nextInt(mdp.getWidth());
+                int y = rand.nextInt(mdp.getHeight());
+                mdp.setField(x, y, fields[rand.nextInt(fields.length)]);
+                int s = table.getIndex(x, y);
+                for (int e = table.getPredecessorStart(s); e < table.getPredecessorStart(s + 1); e++) {
+                    dirty[table.getPredecessor(e)] = true;
+                }
+                dirty[s] = true;
+            }
+            int[] states = new int[dirty.length];
+            int count = 0;
+            for (int s = 0; s < dirty.length; s++) {
+                if (dirty[s]) {
+                    states[count++] = s;
+                }
+            }
+            table.update(mdp, states, count);
+            assertSameModel(new TransitionTable(mdp), table);
+        }
+    }
+
+    /**
+     * Checks that two models have the same states, rows and successor entries.
+     */
+    private static void assertSameModel(TabularMDP expected, TabularMDP actual) {
+        assertEquals(expected.getStates(), actual.getStates());
+        assertEquals(expected.getRows(), actual.getRows());
+        for (int s = 0; s <= expected.getStates(); s++) {
+            assertEquals(expected.getActionStart(s), actual.getActionStart(s));
+        }
+        for (int s = 0; s < expected.getStates(); s++) {
+            assertEquals(expected.getReward(s), actual.getReward(s), 0);
+        }
+        for (int row = 0; row <= expected.getRows(); row++) {
+            assertEquals(expected.getSuccessorStart(row), actual.getSuccessorStart(row));
+        }
+        for (int row = 0; row < expected.getRows(); row++) {
+            assertEquals(expected.getActionId(row), actual.getActionId(row));
+            assertEquals(expected.getRowReward(row), actual.getRowReward(row), 1e-15);
+        }
+        for (int e = 0; e < expected.getSuccessorStart(expected.getRows()); e++) {
+            assertEquals(expected.getSuccessor(e), actual.getSuccessor(e));
+            assertEquals(expected.getProbability(e), actual.getProbability(e), 0);
+            assertEquals(expected.getTransitionReward(e), actual.getTransitionReward(e), 0);
+        }
+    }
+}
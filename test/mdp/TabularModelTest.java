@@ -0,0 +1,44 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the learned model of TabularModel.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class TabularModelTest {
+
+    @Test
+    public void keepsMoreThanFiveOutcomes() {
+        QTable table = new QTable(4, 3);
+        double expected = 0;
+        for (int next = 0; next < table.getStates(); next++) {
+            table.setValue(next, 2, next);
+        }
+        TabularModel model = new TabularModel(table.getStates());
+        // state 5 and action 1 lead to all twelve states and the end, every outcome twice
+        for (int time = 0; time < 2; time++) {
+            for (int next = -1; next < table.getStates(); next++) {
+                model.observe(5, 1, next + 1, next);
+                model.observe(6, 0, 0, next);
+                expected += next + 1 + 0.5 * Math.max(next, 0);
+            }
+        }
+        int stateAction = 5 * QTable.ACTIONS + 1;
+        assertEquals(26, model.getTotal(stateAction));
+        assertEquals(expected / 26, model.target(table, stateAction, 0.5), 1e-12);
+        for (int next = 0; next < table.getStates(); next++) {
+            int predecessors = 0;
+            for (int slot = model.getFirstPredecessor(next); slot >= 0; slot = model.getNextPredecessor(slot)) {
+                int from = model.getStateAction(slot);
+                assertTrue(from == stateAction || from == 6 * QTable.ACTIONS);
+                predecessors++;
+            }
+            assertEquals(2, predecessors);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package mdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the sweep orders of ValueIteration against a converged forward solve.
+ *
+ * @author David Leeftink and Mantas Makelis
+ */
+public class ValueIterationTest {
+
+    /**
+     * A generated map where many moves are blocked and the agent often stays in place.
+     */
+    private static MarkovDecisionProblem createMap(long seed) {
+        MarkovDecisionProblem mdp = new MapGenerator(seed).generate(60, 60, true);
+        mdp.setProbsStep(0.5, 0.2, 0.1, 0.2);
+        return mdp;
+    }
+
+    /**
+     * Solves with the given order to a residual of 1e-6 and checks that no Bellman error is left above the residual
+     * and that the values are within residual / (1 - discount) of a forward solve to 1e-13.
+     */
+    private static void assertConverges(MarkovDecisionProblem mdp, SweepOrder order) {
+        ValueIteration reference = new ValueIteration(mdp, false);
+        reference.setDiscount(0.99);
+        reference.setIterations(1000000);
+        reference.setEpsilon(1e-13, false);
+        reference.solve();
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setDiscount(0.99);
+        vi.setIterations(1000000);
+        vi.setEpsilon(1e-6, false);
+        vi.setSweepOrder(order);
+        vi.solve();
+        TabularMDP model = vi.getModel();
+        double[] values = new double[model.getStates()];
+        for (int s = 0; s < values.length; s++) {
+            values[s] = vi.getValue(s);
+        }
+        double error = 0;
+        for (int s = 0; s < values.length; s++) {
+            error = Math.max(error, Math.abs(model.backup(values, s, 0.99) - values[s]));
+        }
+        assertTrue(order + " residual " + vi.getResidual(), vi.getResidual() < 1e-6);
+        assertTrue(order + " Bellman error " + error + " above the residual", error <= vi.getResidual() + 1e-15);
+        double bound = vi.getResidual() / (1 - 0.99) + 1e-12;
+        for (int x = 0; x < mdp.getWidth(); x++) {
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                assertEquals(order + " at (" + x + ", " + y + ")", reference.getValue(x, y), vi.getValue(x, y), bound);
+            }
+        }
+    }
+
+    @Test
+    public void prioritizedMatchesForward() {
+        for (long seed = 1; seed <= 4; seed++) {
+            assertConverges(createMap(seed), SweepOrder.PRIORITIZED);
+        }
+    }
+
+    @Test
+    public void alternatingMatchesForward() {
+        assertConverges(createMap(1), SweepOrder.ALTERNATING);
+    }
+
+    @Test
+    public void prioritizedResidualIsLeftWhenCutOff() {
+        MarkovDecisionProblem mdp = createMap(1);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setDiscount(0.99);
+        vi.setIterations(1);
+        vi.setSweepOrder(SweepOrder.PRIORITIZED);
+        vi.solve();
+        // cut off after one sweep worth of backups, far from converged
+        assertTrue(vi.getResidual() > 1e-3);
+    }
+
+    @Test
+    public void parallelMatchesForward() {
+        MarkovDecisionProblem mdp = createMap(2);
+        ValueIteration forward = new ValueIteration(mdp, false);
+        forward.setEpsilon(1e-12, false);
+        forward.setIterations(100000);
+        forward.solve();
+        ValueIteration parallel = new ValueIteration(mdp, false);
+        parallel.setEpsilon(1e-12, false);
+        parallel.setIterations(100000);
+        parallel.setParallelism(2);
+        parallel.solve();
+        for (int x = 0; x < mdp.getWidth(); x++) {
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                assertEquals(forward.getValue(x, y), parallel.getValue(x, y), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void updateFollowsChangedFields() {
+        MarkovDecisionProblem mdp = createMap(3);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setDiscount(0.99);
+        vi.setIterations(1000000);
+        vi.setEpsilon(1e-9, false);
+        vi.watch();
+        vi.solve();
+        for (int y = 10; y < 50; y++) {
+            if (mdp.getField(30, y) == Field.EMPTY && !(mdp.getInitialXPosition() == 30 && mdp.getInitialYPosition() == y)) {
+                mdp.setField(30, y, Field.OBSTACLE);
+            }
+        }
+        vi.update();
+        ValueIteration fresh = new ValueIteration(mdp, false);
+        fresh.setDiscount(0.99);
+        fresh.setIterations(1000000);
+        fresh.setEpsilon(1e-9, false);
+        fresh.solve();
+        double bound = 2 * 1e-9 / (1 - 0.99);
+        for (int x = 0; x < mdp.getWidth(); x++) {
+            for (int y = 0; y < mdp.getHeight(); y++) {
+                assertEquals("at (" + x + ", " + y + ")", fresh.getValue(x, y), vi.getValue(x, y), bound);
+            }
+        }
+        assertTrue(vi.getBackups() < fresh.getBackups());
+        // the policy is greedy in the updated values and no Bellman error is above the reported residual
+        TransitionTable table = (TransitionTable) vi.getModel();
+        double[] values = new double[table.getStates()];
+        for (int s = 0; s < values.length; s++) {
+            values[s] = vi.getValue(s);
+        }
+        for (int s = 0; s < values.length; s++) {
+            assertEquals(table.bestAction(values, s, 0.99), vi.getAction(table.getX(s), table.getY(s)));
+            assertTrue(Math.abs(table.backup(values, s, 0.99) - values[s]) <= vi.getResidual() + 1e-15);
+        }
+        // without watching, an update can not know what changed
+        vi.close();
+        mdp.setField(31, 20, Field.OBSTACLE);
+        vi.update();
+        assertEquals(vi.getSweeps() * (long) mdp.getWidth() * mdp.getHeight(), vi.getBackups());
+    }
+
+    @Test
+    public void updateWithoutEpsilonSolvesAgain() {
+        MarkovDecisionProblem mdp = createMap(4);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setIterations(50);
+        vi.solve();
+        mdp.setNoReward(-0.5);
+        vi.update();
+        assertEquals(50, vi.getSweeps());
+        assertEquals(50L * mdp.getWidth() * mdp.getHeight(), vi.getBackups());
+    }
+
+    @Test
+    public void walledInFieldStaysInPlace() {
+        MarkovDecisionProblem mdp = new MarkovDecisionProblem(true);
+        mdp.setField(1, 0, Field.OBSTACLE);
+        mdp.setField(0, 1, Field.OBSTACLE);
+        ValueIteration vi = new ValueIteration(mdp, false);
+        vi.setDiscount(0.9);
+        vi.setIterations(100000);
+        vi.setEpsilon(1e-12, false);
+        vi.solve();
+        assertEquals(Action.UP, vi.getAction(0, 0));
+        assertEquals(mdp.getNoReward() / (1 - 0.9), vi.getValue(0, 0), 1e-9);
+        mdp.setInitialState(0, 0);
+        mdp.restart();
+        mdp.performAction(vi.getAction(0, 0));
+        assertEquals(0, mdp.getStateXPosition());
+        assertEquals(0, mdp.getStateYPostion());
+    }
+}